@@ -0,0 +1,141 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.cloud.stream.annotation.rxjava.RxJavaProcessor;
+import org.springframework.cloud.stream.module.transform.javacompiler.CompilationResult;
+import org.springframework.cloud.stream.module.transform.javacompiler.RuntimeJavaCompiler;
+
+import rx.Observable;
+import rx.subjects.PublishSubject;
+
+/**
+ * Measures the processors compiled from the {@link ProcessorSnippet} code snippets, driving
+ * them with an in-memory source. The throughput benchmark reports messages per second,
+ * pushing a batch of messages through a new subscription each invocation. The output latency
+ * benchmark pushes one window of messages (see {@link ProcessorSnippet#getWindow()}) per
+ * invocation into a long lived subscription, so every invocation runs from the first message
+ * that contributes to an output until that output is emitted. It reports the percentiles
+ * (including p0.99) of that time, which for a buffering snippet covers the whole buffer
+ * rather than the cost of one message.
+ * Run with the GC profiler, allocation per message is reported as <tt>gc.alloc.rate.norm</tt>.
+ *
+ * @author agent
+ */
+@State(Scope.Thread)
+@Fork(2)
+@Warmup(iterations = 10, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class ProcessorBenchmark {
+
+	private final static int BATCH_SIZE = 1000;
+
+	@Param
+	public ProcessorSnippet snippet;
+
+	private RxJavaProcessor<Object, Object> processor;
+
+	private Object[] messages;
+
+	private Observable<Object> batch;
+
+	private PublishSubject<Object> subject;
+
+	private int nextMessage;
+
+	// Written by the output latency benchmark subscriber so that its output is consumed
+	private Object lastOutput;
+
+	private long outputCount;
+
+	@Setup
+	public void setup() throws Exception {
+		RuntimeJavaCompiler compiler = new RuntimeJavaCompiler();
+		String source = RxJavaTransformer.makeSourceClassDefinition(RxJavaTransformer.decodeCodeProperty(snippet.getCode()));
+		CompilationResult compilationResult = compiler.compile(RxJavaTransformer.MAIN_COMPILED_CLASS_NAME, source);
+		if (!compilationResult.wasSuccessful()) {
+			throw new IllegalStateException("Snippet "+snippet+" failed to compile: "+compilationResult.getCompilationMessages());
+		}
+		for (Class<?> clazz: compilationResult.getCompiledClasses()) {
+			if (clazz.getName().equals(RxJavaTransformer.MAIN_COMPILED_CLASS_NAME)) {
+				processor = ((ProcessorFactory)clazz.newInstance()).getProcessor();
+			}
+		}
+		messages = new Object[BATCH_SIZE];
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			messages[i] = Integer.toString(i % 60);
+		}
+		List<Object> messageList = Arrays.asList(messages);
+		batch = Observable.from(messageList);
+	}
+
+	@Setup(Level.Iteration)
+	public void subscribe() {
+		subject = PublishSubject.create();
+		processor.process(subject).subscribe(output -> {
+			lastOutput = output;
+			outputCount++;
+		});
+	}
+
+	@TearDown(Level.Iteration)
+	public void unsubscribe() {
+		subject.onCompleted();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	@OperationsPerInvocation(BATCH_SIZE)
+	public void throughput(Blackhole blackhole) {
+		processor.process(batch).subscribe(blackhole::consume);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SampleTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public Object outputLatency() {
+		long previousOutputCount = outputCount;
+		for (int i = 0, window = snippet.getWindow(); i < window; i++) {
+			subject.onNext(messages[nextMessage]);
+			nextMessage = (nextMessage + 1) % BATCH_SIZE;
+		}
+		if (outputCount == previousOutputCount) {
+			throw new IllegalStateException("Snippet "+snippet+" emitted nothing for a window of "+snippet.getWindow()+" messages");
+		}
+		return lastOutput;
+	}
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform;
+
+/**
+ * The code snippets measured by {@link ProcessorBenchmark}. Every message is a String of a
+ * number between 0 and 59, as produced by the time source with <tt>--dateFormat=ss</tt>. To
+ * measure another snippet add it here with its window, the benchmarks run for every constant.
+ *
+ * @author agent
+ */
+public enum ProcessorSnippet {
+
+	/** The first README example: buffer up 5 messages then pick the first of the 5 */
+	BUFFER_FIRST("return input -> input.buffer(5).map(list->list.get(0));", 5),
+
+	/** The second README example: the average of each group of 3 */
+	WINDOW_AVERAGE("return input -> input.map(s->Integer.valueOf((String)s)).window(3).flatMap(MathObservable::averageInteger);", 3),
+
+	/** The same average computed by the primitive window operators */
+	WINDOW_AGGREGATE("return input -> input.map(s->Integer.valueOf((String)s)).compose(windowAverage(3));", 3),
+
+	/** Every other message is filtered out */
+	MAP_FILTER("return input -> input.map(s->Integer.valueOf((String)s)).filter(i->i%2==0).map(i->i*3).map(String::valueOf);", 2),
+
+	/** Each of the 4 groups emits a buffer once it has 10 messages, all 4 of them every 40 messages */
+	GROUP_BY("return input -> input.map(s->Integer.valueOf((String)s)).groupBy(i->i%4).flatMap(group->group.buffer(10).map(list->group.getKey()+\":\"+list.size()));", 40);
+
+	private final String code;
+
+	private final int window;
+
+	private ProcessorSnippet(String code, int window) {
+		this.code = code;
+		this.window = window;
+	}
+
+	/**
+	 * @return the code, as it would be set in the code property
+	 */
+	public String getCode() {
+		return code;
+	}
+
+	/**
+	 * @return how many consecutive messages, starting from the first, the snippet consumes
+	 *         before it has emitted all the output they produce
+	 */
+	public int getWindow() {
+		return window;
+	}
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform.javacompiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures walking directory trees of increasing depth, each directory holding some class
+ * files and one subdirectory. The <tt>packageDirectory</tt> benchmark starts the walk at
+ * the deepest package, as a listing of a single package does.
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class DirEnumerationBenchmark {
+
+	@Param({"4", "16", "64"})
+	public int depth;
+
+	@Param({"20"})
+	public int classesPerDirectory;
+
+	private File directory;
+
+	private String deepestPackage;
+
+	@Setup
+	public void setup() throws IOException {
+		directory = Files.createTempDirectory("dir-enumeration").toFile();
+		SyntheticArchives.createDirectoryTree(directory, depth, classesPerDirectory);
+		StringBuilder s = new StringBuilder();
+		for (int d = 0; d < depth; d++) {
+			s.append(d == 0 ? "" : ".").append('p').append(d);
+		}
+		deepestPackage = s.toString();
+	}
+
+	@TearDown
+	public void tearDown() {
+		SyntheticArchives.delete(directory);
+	}
+
+	@Benchmark
+	public int wholeTree() {
+		return count(new DirEnumeration(directory));
+	}
+
+	@Benchmark
+	public int packageDirectory() {
+		return count(new DirEnumeration(directory, deepestPackage, false));
+	}
+
+	private static int count(DirEnumeration dirEnumeration) {
+		int count = 0;
+		try (DirEnumeration e = dirEnumeration) {
+			while (e.hasMoreElements()) {
+				if (e.nextElement() != null) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+}
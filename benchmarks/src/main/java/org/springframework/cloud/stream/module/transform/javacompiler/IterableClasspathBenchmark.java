@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform.javacompiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import javax.tools.JavaFileObject;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures iterating over every class in a jar, either directly on the classpath or nested
+ * under <tt>lib/</tt> in an outer jar as in a spring boot uberjar, for jars of increasing size.
+ * Archives are mapped once through a pool, except for <tt>allClassesUnpooled</tt>. The
+ * <tt>packageListing</tt> benchmark iterates a single package, as the compiler does.
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class IterableClasspathBenchmark {
+
+	@Param({"100", "1000", "10000"})
+	public int classCount;
+
+	@Param({"flat", "nested"})
+	public String layout;
+
+	private File directory;
+
+	private String classpath;
+
+	private ArchivePool archivePool;
+
+	@Setup
+	public void setup() throws IOException {
+		directory = Files.createTempDirectory("iterable-classpath").toFile();
+		File jar = new File(directory, layout.equals("nested") ? "outerjar.jar" : "classes.jar");
+		if (layout.equals("nested")) {
+			SyntheticArchives.createOuterJar(jar, classCount, 1024, true);
+		} else {
+			SyntheticArchives.createJar(jar, classCount, 1024);
+		}
+		classpath = jar.getAbsolutePath();
+		archivePool = new ArchivePool(ArchivePool.DEFAULT_MAXIMUM_SIZE);
+	}
+
+	@TearDown
+	public void tearDown() {
+		archivePool.clear();
+		SyntheticArchives.delete(directory);
+	}
+
+	@Benchmark
+	public int allClasses() {
+		return count(new IterableClasspath(classpath, null, false, archivePool));
+	}
+
+	// Maps the archives afresh each time, as the first scan of a classpath does
+	@Benchmark
+	public int allClassesUnpooled() {
+		return count(new IterableClasspath(classpath, null, false));
+	}
+
+	@Benchmark
+	public int packageListing() {
+		return count(new IterableClasspath(classpath, "p1", false, archivePool));
+	}
+
+	private static int count(IterableClasspath iterableClasspath) {
+		int count = 0;
+		try {
+			for (JavaFileObject javaFileObject: iterableClasspath) {
+				if (javaFileObject != null) {
+					count++;
+				}
+			}
+		} finally {
+			iterableClasspath.close();
+		}
+		return count;
+	}
+
+}
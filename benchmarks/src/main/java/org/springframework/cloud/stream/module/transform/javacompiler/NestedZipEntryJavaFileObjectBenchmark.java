@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform.javacompiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures reading a class file from a jar nested in an outer jar, for class files of
+ * different sizes and for nested jars that are stored (as spring boot does) or deflated.
+ * A deflated nested jar is inflated when first mapped, after which its pool entry is reused.
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class NestedZipEntryJavaFileObjectBenchmark {
+
+	@Param({"1024", "65536"})
+	public int classSize;
+
+	@Param({"true", "false"})
+	public boolean storeNested;
+
+	private File directory;
+
+	private ArchivePool archivePool;
+
+	private NestedZipEntryJavaFileObject javaFileObject;
+
+	private final byte[] buffer = new byte[8192];
+
+	@Setup
+	public void setup() throws IOException {
+		directory = Files.createTempDirectory("nested-zip-entry").toFile();
+		File outerJar = new File(directory, "outerjar.jar");
+		SyntheticArchives.createOuterJar(outerJar, 1, classSize, storeNested);
+		archivePool = new ArchivePool(ArchivePool.DEFAULT_MAXIMUM_SIZE);
+		MappedArchive outerArchive = archivePool.getArchive(outerJar);
+		NestedArchive nestedArchive = new NestedArchive(archivePool, outerJar, outerArchive, outerArchive.findEntry("lib/inner.jar"));
+		MappedArchive innerArchive = nestedArchive.getArchive();
+		javaFileObject = new NestedZipEntryJavaFileObject(nestedArchive, innerArchive.findEntry("p0/C0.class"));
+	}
+
+	@TearDown
+	public void tearDown() {
+		archivePool.clear();
+		SyntheticArchives.delete(directory);
+	}
+
+	@Benchmark
+	public long openInputStream() throws IOException {
+		long total = 0;
+		try (InputStream is = javaFileObject.openInputStream()) {
+			int read;
+			while ((read = is.read(buffer)) != -1) {
+				total += read;
+			}
+		}
+		return total;
+	}
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform.javacompiler;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cloud.stream.module.transform.ProgrammableRxJavaProcessorProperties;
+import org.springframework.cloud.stream.module.transform.RxJavaTransformer;
+
+/**
+ * Measures compiling a processor snippet. A cold compile is the first in a fresh JVM, so it
+ * includes loading the compiler and indexing the classpath, each fork measures one. A warm
+ * compile reuses the loaded compiler and classpath index, the compilation result cache is
+ * disabled so that every invocation compiles. The source is built as the processor builds it,
+ * either with the default on-demand imports or with the explicitImports property set, in which
+ * case the time to resolve the imports is included.
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RuntimeJavaCompilerBenchmark {
+
+	// The class declared by the RxJavaTransformer source template
+	private final static String CLASS_NAME = "org.springframework.cloud.stream.module.transform.RxClass";
+
+	private final static String CODE = "return input -> input.map(s -> Integer.valueOf((String)s)).window(3).flatMap(MathObservable::averageInteger);";
+
+	@Param({"javac", "ecj"})
+	public String compiler;
+
+	@Param({"onDemand", "explicit"})
+	public String imports;
+
+	private RuntimeJavaCompiler runtimeJavaCompiler;
+
+	private ProgrammableRxJavaProcessorProperties properties;
+
+	// Created on first use, as the processor does, so a cold compile includes building it
+	private ImportResolver importResolver;
+
+	@Setup
+	public void setup() {
+		runtimeJavaCompiler = new RuntimeJavaCompiler();
+		runtimeJavaCompiler.setCompilerBackend(RuntimeJavaCompiler.createCompilerBackend(compiler));
+		runtimeJavaCompiler.setCompilationResultCache(null);
+		properties = new ProgrammableRxJavaProcessorProperties();
+		properties.setExplicitImports(imports.equals("explicit"));
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Fork(10)
+	@Warmup(iterations = 0)
+	@Measurement(iterations = 1)
+	public CompilationResult cold() {
+		return compile();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@Fork(2)
+	@Warmup(iterations = 10, time = 1)
+	@Measurement(iterations = 10, time = 1)
+	public CompilationResult warm() {
+		return compile();
+	}
+
+	private CompilationResult compile() {
+		String source = RxJavaTransformer.makeSourceClassDefinition(CODE, properties, this::getImportResolver);
+		CompilationResult result = runtimeJavaCompiler.compile(CLASS_NAME, source);
+		if (!result.wasSuccessful()) {
+			throw new IllegalStateException("Benchmark snippet failed to compile: "+result.getCompilationMessages());
+		}
+		// Let the compiled classes be unloaded
+		runtimeJavaCompiler.release(result);
+		return result;
+	}
+
+	private ImportResolver getImportResolver() {
+		if (importResolver == null) {
+			importResolver = new ImportResolver(RuntimeJavaCompilerBenchmark.class.getClassLoader(), runtimeJavaCompiler.getArtifactFilter());
+		}
+		return importResolver;
+	}
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform.javacompiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Creates the jars and directory trees that the classpath benchmarks run over. Class files
+ * are filled with random bytes, only the names and sizes matter.
+ *
+ * @author agent
+ */
+class SyntheticArchives {
+
+	// Entries are spread over packages of this size
+	private final static int CLASSES_PER_PACKAGE = 50;
+
+	private final static Random random = new Random(42);
+
+	/**
+	 * @param jar the jar to create
+	 * @param classCount the number of class files in the jar
+	 * @param classSize the size of each class file
+	 * @throws IOException if the jar cannot be written
+	 */
+	static void createJar(File jar, int classCount, int classSize) throws IOException {
+		try (OutputStream os = new FileOutputStream(jar)) {
+			writeJar(os, classCount, classSize);
+		}
+	}
+
+	/**
+	 * Create a jar with the layout of a spring boot uberjar, containing a jar of classes under <tt>lib/</tt>.
+	 * @param jar the outer jar to create
+	 * @param classCount the number of class files in the nested jar
+	 * @param classSize the size of each class file
+	 * @param storeNested if true the nested jar is stored (as spring boot does), otherwise it is deflated
+	 * @throws IOException if the jar cannot be written
+	 */
+	static void createOuterJar(File jar, int classCount, int classSize, boolean storeNested) throws IOException {
+		ByteArrayOutputStream nested = new ByteArrayOutputStream();
+		writeJar(nested, classCount, classSize);
+		try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(jar))) {
+			ZipEntry entry = new ZipEntry("lib/inner.jar");
+			if (storeNested) {
+				store(entry, nested.toByteArray());
+			}
+			zos.putNextEntry(entry);
+			zos.write(nested.toByteArray());
+			zos.closeEntry();
+		}
+	}
+
+	/**
+	 * Create a directory tree of the given depth, each directory containing class files and one subdirectory.
+	 * @param root the directory to create the tree in
+	 * @param depth the number of nested directories
+	 * @param classesPerDirectory the number of class files in each directory
+	 * @throws IOException if the tree cannot be written
+	 */
+	static void createDirectoryTree(File root, int depth, int classesPerDirectory) throws IOException {
+		File directory = root;
+		for (int d = 0; d < depth; d++) {
+			directory = new File(directory, "p" + d);
+			if (!directory.mkdirs()) {
+				throw new IOException("Unable to create " + directory);
+			}
+			for (int c = 0; c < classesPerDirectory; c++) {
+				Files.write(new File(directory, "C" + c + ".class").toPath(), classBytes(64));
+			}
+		}
+	}
+
+	/**
+	 * @param root a file or directory to delete, along with anything beneath it
+	 */
+	static void delete(File root) {
+		File[] children = root.listFiles();
+		if (children != null) {
+			for (File child: children) {
+				delete(child);
+			}
+		}
+		root.delete();
+	}
+
+	private static void writeJar(OutputStream os, int classCount, int classSize) throws IOException {
+		try (ZipOutputStream zos = new ZipOutputStream(os)) {
+			for (int c = 0; c < classCount; c++) {
+				zos.putNextEntry(new ZipEntry("p" + (c / CLASSES_PER_PACKAGE) + "/C" + c + ".class"));
+				zos.write(classBytes(classSize));
+				zos.closeEntry();
+			}
+		}
+	}
+
+	private static void store(ZipEntry entry, byte[] bytes) {
+		CRC32 crc = new CRC32();
+		crc.update(bytes);
+		entry.setMethod(ZipEntry.STORED);
+		entry.setSize(bytes.length);
+		entry.setCompressedSize(bytes.length);
+		entry.setCrc(crc.getValue());
+	}
+
+	private static byte[] classBytes(int size) {
+		byte[] bytes = new byte[size];
+		synchronized (random) {
+			random.nextBytes(bytes);
+		}
+		return bytes;
+	}
+
+}
@@ -0,0 +1,176 @@
+#!/bin/bash
+#
+# Copyright 2016 the original author or authors.
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#      http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+#
+# Creates and uses an application class data sharing (AppCDS) archive for the processor, so that
+# the Spring, compiler and RxJava classes needed at startup are mapped from the archive rather
+# than being loaded and verified.
+#
+#   appcds.sh train <exec-jar> <dir> [app-args...]      explode the jar into <dir>, perform a training
+#                                                      run and dump the archive
+#   appcds.sh run <dir> [app-args...]                  launch the application using the archive
+#   appcds.sh benchmark <dir> [runs] [app-args...]     time training runs with and without the archive
+#
+# Class data sharing cannot load classes from the nested jars of a spring boot jar, so the jar is
+# exploded into a plain classpath. Application class data sharing is available in OpenJDK from 10
+# onwards and in Oracle JDK 8u40 onwards (a commercial feature before 10), it is not in OpenJDK 8
+# or 9. The JDK is checked before each command. JAVA_HOME selects the JDK, the same JDK must be
+# used to train and to run.
+
+set -e
+
+MAIN_CLASS=org.springframework.cloud.stream.module.transform.ProgrammableRxJavaProcessorApplication
+TRAINING_CLASS=org.springframework.cloud.stream.module.transform.TrainingRun
+
+if [ -n "$JAVA_HOME" ]; then
+	JAVA="$JAVA_HOME/bin/java"
+	JAR="$JAVA_HOME/bin/jar"
+	# On JDK 8 the java.home of a build (as passed by the appcds maven profile) is the JRE inside the JDK
+	[ -x "$JAR" ] || JAR="$JAVA_HOME/../bin/jar"
+else
+	JAVA=java
+	JAR=jar
+fi
+
+# Print the usage lines of the header comment, from the first command to the blank line after the last
+usage() {
+	sed -n '/^#   appcds.sh /,/^#$/{/^#$/d;s/^# //;p;}' "$0"
+	exit 1
+}
+
+# Sets APPCDS_OPTIONS to the options needed to use AppCDS with the selected JDK, failing with an
+# explanation when the JDK does not have it rather than leaving the JVM to refuse to start
+check_jdk() {
+	local version_output version update
+	version_output=$("$JAVA" -version 2>&1) || { echo "Unable to run $JAVA" >&2; exit 1; }
+	version=$(echo "$version_output" | head -1 | sed -E 's/[^"]*"(1\.)?([0-9]+).*/\2/')
+	if ! [[ "$version" =~ ^[0-9]+$ ]]; then
+		echo "Unable to determine the version of $JAVA from: $(echo "$version_output" | head -1)" >&2
+		exit 1
+	fi
+	if ! echo "$version_output" | grep -q -e "HotSpot" -e "OpenJDK .*VM"; then
+		echo "AppCDS needs a HotSpot JVM, $JAVA is: $(echo "$version_output" | tail -1)" >&2
+		exit 1
+	fi
+	if [ "$version" -lt 10 ] && ! echo "$version_output" | grep -q "Java HotSpot(TM)"; then
+		echo "AppCDS is not available in OpenJDK $version, use OpenJDK 10 or later or Oracle JDK 8u40 or later" >&2
+		exit 1
+	fi
+	case $version in
+		8)
+			update=$(echo "$version_output" | head -1 | sed -E 's/[^"]*"1\.8\.0_([0-9]+).*/\1/')
+			if ! [[ "$update" =~ ^[0-9]+$ ]] || [ "$update" -lt 40 ]; then
+				echo "AppCDS needs Oracle JDK 8u40 or later, $JAVA is: $(echo "$version_output" | head -1)" >&2
+				exit 1
+			fi
+			APPCDS_OPTIONS="-XX:+UnlockCommercialFeatures -XX:+UseAppCDS" ;;
+		9) APPCDS_OPTIONS="-XX:+UnlockCommercialFeatures -XX:+UseAppCDS" ;;
+		10) APPCDS_OPTIONS="-XX:+UseAppCDS" ;;
+		*)
+			if [ "$version" -lt 8 ]; then
+				echo "AppCDS needs Oracle JDK 8u40 or later or OpenJDK 10 or later, $JAVA is version $version" >&2
+				exit 1
+			fi
+			APPCDS_OPTIONS="" ;;
+	esac
+}
+
+# The archive records the classpath, runs must use the same one so it is kept alongside the archive
+classpath() {
+	cat "$1/classpath"
+}
+
+explode() {
+	local jar dir=$2
+	jar=$(cd "$(dirname "$1")" && pwd)/$(basename "$1")
+	if [ -e "$dir" ] && [ ! -f "$dir/classpath" ]; then
+		echo "$dir already exists and was not created by this script" >&2
+		exit 1
+	fi
+	rm -rf "$dir" && mkdir -p "$dir/exploded"
+	dir=$(cd "$dir" && pwd)
+	(cd "$dir/exploded" && unzip -q "$jar")
+	mv "$dir/exploded/lib" "$dir/lib"
+	# The spring boot launcher is not needed, the main class is run directly
+	rm -rf "$dir/exploded/org/springframework/boot/loader"
+	# Directories on the classpath cannot be archived, so the application classes are put in a jar
+	"$JAR" cf "$dir/app.jar" -C "$dir/exploded" .
+	rm -rf "$dir/exploded"
+	{ echo -n "$dir/app.jar"; ls "$dir"/lib/*.jar | sort | sed 's/^/:/' | tr -d '\n'; } > "$dir/classpath"
+}
+
+train() {
+	[ $# -ge 2 ] || usage
+	local jar=$1 dir=$2
+	shift 2
+	check_jdk
+	explode "$jar" "$dir"
+	dir=$(cd "$dir" && pwd)
+	echo "Training run, recording loaded classes in $dir/classes.lst"
+	"$JAVA" $APPCDS_OPTIONS -Xshare:off -XX:DumpLoadedClassList="$dir/classes.lst" \
+		-cp "$(classpath "$dir")" $TRAINING_CLASS "$@"
+	echo "Dumping archive $dir/app.jsa"
+	"$JAVA" $APPCDS_OPTIONS -Xshare:dump -XX:SharedClassListFile="$dir/classes.lst" \
+		-XX:SharedArchiveFile="$dir/app.jsa" -cp "$(classpath "$dir")"
+}
+
+run() {
+	[ $# -ge 1 ] || usage
+	local dir=$1
+	shift
+	check_jdk
+	exec "$JAVA" $APPCDS_OPTIONS -Xshare:auto -XX:SharedArchiveFile="$dir/app.jsa" \
+		-cp "$(classpath "$dir")" $MAIN_CLASS "$@"
+}
+
+# Elapsed milliseconds for a training run, which starts the application then compiles and runs a snippet
+time_training_run() {
+	local start end
+	start=$(date +%s%N)
+	if ! "$JAVA" "$@" $TRAINING_CLASS $APP_ARGS > /dev/null 2>&1; then
+		echo "Training run failed: $JAVA $* $TRAINING_CLASS $APP_ARGS" >&2
+		exit 1
+	fi
+	end=$(date +%s%N)
+	echo $(( (end - start) / 1000000 ))
+}
+
+benchmark() {
+	[ $# -ge 1 ] || usage
+	local dir=$1 runs=${2:-5}
+	shift $(( $# < 2 ? $# : 2 ))
+	APP_ARGS="$*"
+	[ -f "$dir/app.jsa" ] || { echo "No archive in $dir, run train first" >&2; exit 1; }
+	check_jdk
+	local cp=$(classpath "$dir") total_default=0 total_appcds=0 default appcds
+	for i in $(seq 1 "$runs"); do
+		default=$(time_training_run -cp "$cp")
+		appcds=$(time_training_run $APPCDS_OPTIONS -Xshare:on -XX:SharedArchiveFile="$dir/app.jsa" -cp "$cp")
+		total_default=$((total_default + default))
+		total_appcds=$((total_appcds + appcds))
+		echo "run $i: default=${default}ms appcds=${appcds}ms"
+	done
+	echo "mean over $runs runs: default=$((total_default / runs))ms appcds=$((total_appcds / runs))ms"
+}
+
+command=$1
+[ -n "$command" ] || usage
+shift
+case $command in
+	train) train "$@" ;;
+	run) run "$@" ;;
+	benchmark) benchmark "$@" ;;
+	*) usage ;;
+esac
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.cloud.stream.module.transform.javacompiler.ClassLoaderRegistry;
+import org.springframework.cloud.stream.module.transform.javacompiler.CompilationResultCache;
+import org.springframework.cloud.stream.module.transform.javacompiler.CompilationStatistics;
+import org.springframework.cloud.stream.module.transform.javacompiler.RuntimeJavaCompiler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes the compiler's metrics on the actuator <tt>/metrics</tt> endpoint: the
+ * counters and timers for each phase of compilation, the cold and warm compile times of
+ * the compiler in use, the compilation result cache and the class loaders holding compiled
+ * code. Times are in milliseconds.
+ *
+ * @author agent
+ */
+@Component
+public class CompilerPublicMetrics implements PublicMetrics {
+
+	@Autowired
+	private RuntimeJavaCompiler compiler;
+
+	@Override
+	public Collection<Metric<?>> metrics() {
+		List<Metric<?>> metrics = new ArrayList<>();
+		for (Map.Entry<String, Number> meter: compiler.getCompilationMetrics().getMeters().entrySet()) {
+			metrics.add(new Metric<>(meter.getKey(), meter.getValue()));
+		}
+		CompilationStatistics statistics = compiler.getCompilationStatistics();
+		String backendName = compiler.getCompilerBackend().getName();
+		addTime(metrics, "compiler.compile.cold", statistics.getColdCompileNanos(backendName));
+		metrics.add(new Metric<>("compiler.compile.warm.count", statistics.getWarmCompileCount(backendName)));
+		addTime(metrics, "compiler.compile.warm.mean", statistics.getMeanWarmCompileNanos(backendName));
+		CompilationResultCache cache = compiler.getCompilationResultCache();
+		if (cache != null) {
+			metrics.add(new Metric<>("compiler.cache.size", cache.size()));
+			metrics.add(new Metric<>("compiler.cache.hits", cache.getHitCount()));
+			metrics.add(new Metric<>("compiler.cache.misses", cache.getMissCount()));
+			metrics.add(new Metric<>("compiler.cache.evictions", cache.getEvictionCount()));
+		}
+		ClassLoaderRegistry registry = compiler.getClassLoaderRegistry();
+		metrics.add(new Metric<>("compiler.classloaders.live", registry.getLiveLoaderCount()));
+		metrics.add(new Metric<>("compiler.classloaders.releasedLive", registry.getReleasedLiveLoaderCount()));
+		metrics.add(new Metric<>("compiler.classloaders.unloaded", registry.getUnloadedCount()));
+		metrics.add(new Metric<>("compiler.classloaders.metaspaceBytes", registry.getLiveMetaspaceBytes()));
+		return metrics;
+	}
+
+	// Nothing is published for a time that has not been recorded yet (reported as -1)
+	private static void addTime(List<Metric<?>> metrics, String name, long nanos) {
+		if (nanos >= 0) {
+			metrics.add(new Metric<>(name, TimeUnit.NANOSECONDS.toMillis(nanos)));
+		}
+	}
+
+}
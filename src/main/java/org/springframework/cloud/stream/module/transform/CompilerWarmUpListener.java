@@ -0,0 +1,64 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform;
+
+import java.io.File;
+
+import org.springframework.boot.bind.RelaxedPropertyResolver;
+import org.springframework.boot.context.event.ApplicationEnvironmentPreparedEvent;
+import org.springframework.cloud.stream.module.transform.javacompiler.ArtifactFilter;
+import org.springframework.cloud.stream.module.transform.javacompiler.ClasspathIndex;
+import org.springframework.cloud.stream.module.transform.javacompiler.RuntimeJavaCompiler;
+import org.springframework.context.ApplicationListener;
+
+/**
+ * Starts warming up the compiler as soon as the environment is available, so that it
+ * happens in parallel with the rest of application startup rather than as part of compiling
+ * the code property. Controlled by the warmUp property, the compiler, compileArtifacts
+ * and compileStubs properties determine which compiler is warmed up and the classpath it is
+ * warmed up with.
+ *
+ * @author agent
+ */
+public class CompilerWarmUpListener implements ApplicationListener<ApplicationEnvironmentPreparedEvent> {
+
+	@Override
+	public void onApplicationEvent(ApplicationEnvironmentPreparedEvent event) {
+		RelaxedPropertyResolver resolver = new RelaxedPropertyResolver(event.getEnvironment());
+		if (!resolver.getProperty("warmUp", Boolean.class, true)) {
+			return;
+		}
+		// The warm up state (loaded classes, classpath indexes) is shared with the compiler
+		// instance that will be created in the application context
+		Integer classpathScanParallelism = resolver.getProperty("classpathScanParallelism", Integer.class);
+		if (classpathScanParallelism != null) {
+			ClasspathIndex.setScanParallelism(classpathScanParallelism);
+		}
+		RuntimeJavaCompiler compiler = new RuntimeJavaCompiler();
+		String compilerName = resolver.getProperty("compiler");
+		if (compilerName != null) {
+			compiler.setCompilerBackend(RuntimeJavaCompiler.createCompilerBackend(compilerName));
+		}
+		compiler.setArtifactFilter(ArtifactFilter.parse(resolver.getProperty("compileArtifacts",
+				ProgrammableRxJavaProcessorProperties.DEFAULT_COMPILE_ARTIFACTS)));
+		String compileStubs = resolver.getProperty("compileStubs");
+		if (compileStubs != null) {
+			compiler.setStubArchive(new File(compileStubs));
+		}
+		compiler.warmUpInBackground();
+	}
+
+}
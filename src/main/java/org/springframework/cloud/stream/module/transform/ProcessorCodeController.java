@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.stream.module.transform.javacompiler.CompilationMessage;
+import org.springframework.cloud.stream.module.transform.javacompiler.CompilationResult;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Allows the code run by the processor to be viewed and replaced without restarting.
+ * POST new code (as plain text, not escaped as it would be for the code property) to
+ * /processor/code. If it fails to compile the compilation messages are returned and the
+ * processor continues running the old code.
+ * <p>
+ * Whatever code is POSTed is compiled and run, so the controller is only created when the
+ * reloadEnabled property is set and the endpoint must then be secured.
+ *
+ * @author agent
+ */
+@RestController
+@ConditionalOnProperty(name = "reloadEnabled", havingValue = "true")
+@RequestMapping("/processor/code")
+public class ProcessorCodeController {
+
+	@Autowired
+	private RxJavaTransformer transformer;
+
+	@RequestMapping(method = RequestMethod.GET)
+	public String getCode() {
+		return transformer.getCurrentCode();
+	}
+
+	@RequestMapping(method = RequestMethod.POST)
+	public ResponseEntity<String> reload(@RequestBody String code) {
+		CompilationResult compilationResult;
+		try {
+			compilationResult = transformer.reload(code);
+		} catch (IllegalStateException ise) {
+			return new ResponseEntity<>(ise.getMessage()+"\n", HttpStatus.CONFLICT);
+		}
+		if (!compilationResult.wasSuccessful()) {
+			StringBuilder s = new StringBuilder();
+			for (CompilationMessage compilationMessage: compilationResult.getCompilationMessages()) {
+				s.append(compilationMessage);
+			}
+			return new ResponseEntity<>(s.toString(), HttpStatus.BAD_REQUEST);
+		}
+		return new ResponseEntity<>("Processor reloaded\n", HttpStatus.OK);
+	}
+
+}
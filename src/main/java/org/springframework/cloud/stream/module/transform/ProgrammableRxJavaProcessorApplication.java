@@ -30,6 +30,15 @@ import org.springframework.context.annotation.ComponentScan;
 public class ProgrammableRxJavaProcessorApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.run(ProgrammableRxJavaProcessorApplication.class, args);
+		createApplication().run(args);
+	}
+
+	/**
+	 * @return the application, configured to warm up the compiler as it starts
+	 */
+	static SpringApplication createApplication() {
+		SpringApplication application = new SpringApplication(ProgrammableRxJavaProcessorApplication.class);
+		application.addListeners(new CompilerWarmUpListener());
+		return application;
 	}
 }
@@ -27,7 +27,8 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 @ConfigurationProperties
 public class ProgrammableRxJavaProcessorProperties {
 
-	// TODO add an 'imports' property for specifying imports to include 'aaa.bbb.ccc.Ddd, com.foo.*'
+	public final static String DEFAULT_COMPILE_ARTIFACTS = "rxjava,rxjava-math,spring-cloud-stream-rxjava,programmable-rxjava-processor";
+
 	// TODO add a 'dependencies' property for specifying maven dependencies to download and include during compile/runtime.
 
 	/*
@@ -46,6 +47,87 @@ public class ProgrammableRxJavaProcessorProperties {
 	 */
 	private String code;
 
+	/**
+	 * Imports to include in addition to the defaults, separated by commas.
+	 * For example: com.example.Foo, com.example.util.*, static com.example.Bar.*
+	 */
+	private String imports;
+
+	/**
+	 * Whether to replace on-demand imports (those ending .*) with imports of just the types
+	 * and static members the code refers to, making compilation faster.
+	 */
+	private boolean explicitImports = false;
+
+	/**
+	 * The type of the input payloads, for example Integer. If set the code returns a processor
+	 * of that input type, payloads are converted to it as they arrive so no casts are needed.
+	 * If not set the input type is Object.
+	 */
+	private String inputType;
+
+	/**
+	 * The type of the output payloads, for example String. If set the code returns a processor
+	 * of that output type. If not set the output type is Object.
+	 */
+	private String outputType;
+
+	/**
+	 * A directory in which compiled code is kept so that it can be reused after a restart,
+	 * avoiding recompilation of unchanged code. If not set compiled code is not persisted.
+	 */
+	private String cacheDirectory;
+
+	/**
+	 * The number of threads used to scan the classpath the first time code is compiled.
+	 * If not set, the number of available processors is used.
+	 */
+	private Integer classpathScanParallelism;
+
+	/**
+	 * The artifact ids of the jars on the classpath that the code is compiled against, separated
+	 * by commas, or * for all of them. The JDK is always available. Fewer jars makes compilation
+	 * faster and uses less memory.
+	 */
+	private String compileArtifacts = DEFAULT_COMPILE_ARTIFACTS;
+
+	/**
+	 * A stub archive, created at build time by the stubs profile, that the code is compiled
+	 * against instead of the classpath. The stubs contain only the signatures of the classes
+	 * selected by compileArtifacts when the archive was generated.
+	 */
+	private String compileStubs;
+
+	/**
+	 * The compiler used to compile the code: javac or ecj. If not set javac is used when
+	 * running on a JDK, otherwise ecj.
+	 */
+	private String compiler;
+
+	/**
+	 * Whether to warm up the compiler in the background as the application starts, making
+	 * the first compilation faster.
+	 */
+	private boolean warmUp = true;
+
+	/**
+	 * Whether to compile the code in the background whilst the rest of the application
+	 * starts. Input received before compilation completes is buffered.
+	 */
+	private boolean asyncCompilation = false;
+
+	/**
+	 * When compiling asynchronously, how many input messages to buffer before blocking
+	 * further input until compilation completes.
+	 */
+	private int asyncCompilationBufferSize = 1024;
+
+	/**
+	 * Whether the code can be replaced whilst running, by POSTing new code to /processor/code.
+	 * That runs whatever code it is sent, so only enable it where the endpoint is secured.
+	 */
+	private boolean reloadEnabled = false;
+
 	@NotNull
 	public String getCode() {
 		return code;
@@ -54,4 +136,108 @@ public class ProgrammableRxJavaProcessorProperties {
 	public void setCode(String code) {
 		this.code = code;
 	}
+
+	public String getImports() {
+		return imports;
+	}
+
+	public void setImports(String imports) {
+		this.imports = imports;
+	}
+
+	public boolean isExplicitImports() {
+		return explicitImports;
+	}
+
+	public void setExplicitImports(boolean explicitImports) {
+		this.explicitImports = explicitImports;
+	}
+
+	public String getInputType() {
+		return inputType;
+	}
+
+	public void setInputType(String inputType) {
+		this.inputType = inputType;
+	}
+
+	public String getOutputType() {
+		return outputType;
+	}
+
+	public void setOutputType(String outputType) {
+		this.outputType = outputType;
+	}
+
+	public String getCacheDirectory() {
+		return cacheDirectory;
+	}
+
+	public void setCacheDirectory(String cacheDirectory) {
+		this.cacheDirectory = cacheDirectory;
+	}
+
+	public Integer getClasspathScanParallelism() {
+		return classpathScanParallelism;
+	}
+
+	public void setClasspathScanParallelism(Integer classpathScanParallelism) {
+		this.classpathScanParallelism = classpathScanParallelism;
+	}
+
+	public String getCompileArtifacts() {
+		return compileArtifacts;
+	}
+
+	public void setCompileArtifacts(String compileArtifacts) {
+		this.compileArtifacts = compileArtifacts;
+	}
+
+	public String getCompileStubs() {
+		return compileStubs;
+	}
+
+	public void setCompileStubs(String compileStubs) {
+		this.compileStubs = compileStubs;
+	}
+
+	public String getCompiler() {
+		return compiler;
+	}
+
+	public void setCompiler(String compiler) {
+		this.compiler = compiler;
+	}
+
+	public boolean isWarmUp() {
+		return warmUp;
+	}
+
+	public void setWarmUp(boolean warmUp) {
+		this.warmUp = warmUp;
+	}
+
+	public boolean isAsyncCompilation() {
+		return asyncCompilation;
+	}
+
+	public void setAsyncCompilation(boolean asyncCompilation) {
+		this.asyncCompilation = asyncCompilation;
+	}
+
+	public int getAsyncCompilationBufferSize() {
+		return asyncCompilationBufferSize;
+	}
+
+	public void setAsyncCompilationBufferSize(int asyncCompilationBufferSize) {
+		this.asyncCompilationBufferSize = asyncCompilationBufferSize;
+	}
+
+	public boolean isReloadEnabled() {
+		return reloadEnabled;
+	}
+
+	public void setReloadEnabled(boolean reloadEnabled) {
+		this.reloadEnabled = reloadEnabled;
+	}
 }
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.stream.annotation.rxjava.RxJavaProcessor;
+
+import rx.Notification;
+import rx.Observable;
+import rx.Observer;
+import rx.subjects.PublishSubject;
+import rx.subjects.Subject;
+
+/**
+ * An RxJavaProcessor that delegates to another processor which may not be available yet
+ * and which can be replaced whilst running.
+ * <p>
+ * The processor can be bound before the delegate is available, allowing the code to be
+ * compiled whilst the rest of the application starts. Input that arrives before the
+ * delegate is available is buffered, once the buffer is full the threads delivering input
+ * are blocked until the delegate is available. When it becomes available the buffered input
+ * is passed to it, in order, followed by any further input. If the delegate cannot be
+ * produced (the code failed to compile) input is dropped until a delegate is supplied
+ * with {@link #reload(RxJavaProcessor)}.
+ * <p>
+ * On reload new input goes to the new delegate. The input of the previous delegate is
+ * completed so that it drains: anything it was holding (e.g. a partially filled buffer or
+ * window) is emitted before the output of the new delegate. Input is paused only for as
+ * long as it takes to complete the old delegate and subscribe to the new one.
+ *
+ * @author agent
+ */
+public class ReloadableRxJavaProcessor implements RxJavaProcessor<Object,Object> {
+
+	private static Logger logger = LoggerFactory.getLogger(ReloadableRxJavaProcessor.class);
+
+	private final int bufferSize;
+
+	private final Object lock = new Object();
+
+	private CompletableFuture<RxJavaProcessor<Object,Object>> processorFuture;
+
+	// The merged output of every delegate, set when processing starts
+	private Subject<Object,Object> output;
+
+	// Input received before a delegate processor was available
+	private final Queue<Object> buffer = new ArrayDeque<>();
+
+	// Set once the input terminates
+	private Notification<Object> inputTermination;
+
+	// Input to the current delegate processor
+	private Observer<Object> target;
+
+	// Incremented each time a delegate is connected
+	private int generation;
+
+	private boolean failed;
+
+	/**
+	 * @param processorFuture completes with the processor to delegate to, or null if there is none
+	 * @param bufferSize how many input elements to buffer before blocking
+	 */
+	public ReloadableRxJavaProcessor(CompletableFuture<RxJavaProcessor<Object,Object>> processorFuture, int bufferSize) {
+		if (bufferSize < 1) {
+			throw new IllegalArgumentException("Buffer size must be at least 1: "+bufferSize);
+		}
+		this.processorFuture = processorFuture;
+		this.bufferSize = bufferSize;
+	}
+
+	@Override
+	public Observable<Object> process(Observable<Object> input) {
+		// Delegates may emit from different threads whilst one drains and the next starts
+		Subject<Object,Object> mergedOutput = PublishSubject.create().toSerialized();
+		// Start consuming input when the output is subscribed to, nothing produced can be lost
+		return Observable.create(subscriber -> {
+			CompletableFuture<RxJavaProcessor<Object,Object>> initialProcessor;
+			synchronized (lock) {
+				if (output != null) {
+					subscriber.onError(new IllegalStateException("The processor is already processing an input, it can only process one"));
+					return;
+				}
+				output = mergedOutput;
+				initialProcessor = processorFuture;
+			}
+			mergedOutput.subscribe(subscriber);
+			// Bind first, if the processor is already available input will not need buffering
+			initialProcessor.whenComplete((processor, throwable) -> bind(processor, throwable));
+			input.subscribe(new Observer<Object>() {
+				@Override
+				public void onNext(Object element) {
+					accept(element);
+				}
+
+				@Override
+				public void onError(Throwable throwable) {
+					terminate(Notification.createOnError(throwable));
+				}
+
+				@Override
+				public void onCompleted() {
+					terminate(Notification.createOnCompleted());
+				}
+			});
+		});
+	}
+
+	/**
+	 * Switch to a new delegate processor. If processing has not started yet the new delegate
+	 * replaces the one that was going to be used.
+	 *
+	 * @param processor the new processor to delegate to
+	 */
+	public void reload(RxJavaProcessor<Object,Object> processor) {
+		synchronized (lock) {
+			if (output == null) {
+				processorFuture = CompletableFuture.completedFuture(processor);
+				return;
+			}
+			if (inputTermination != null) {
+				logger.warn("Not reloading processor, input has already terminated");
+				return;
+			}
+			long stime = System.nanoTime();
+			connect(processor);
+			logger.info("Reloaded processor (generation {}) in {}ms",generation,TimeUnit.NANOSECONDS.toMillis(System.nanoTime()-stime));
+		}
+	}
+
+	/**
+	 * @return true once a delegate processor is receiving input
+	 */
+	public boolean isBound() {
+		synchronized (lock) {
+			return target != null;
+		}
+	}
+
+	/**
+	 * @return how many delegate processors have been connected
+	 */
+	public int getGeneration() {
+		synchronized (lock) {
+			return generation;
+		}
+	}
+
+	private void accept(Object element) {
+		synchronized (lock) {
+			while (target == null && !failed && buffer.size() >= bufferSize) {
+				try {
+					lock.wait();
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted whilst waiting for the processor to be available", ie);
+				}
+			}
+			if (target != null) {
+				target.onNext(element);
+			} else if (failed) {
+				logger.debug("Dropping input, there is no processor: {}",element);
+			} else {
+				buffer.add(element);
+			}
+		}
+	}
+
+	private void terminate(Notification<Object> notification) {
+		synchronized (lock) {
+			inputTermination = notification;
+			if (target != null) {
+				notification.accept(target);
+			}
+		}
+	}
+
+	private void bind(RxJavaProcessor<Object,Object> processor, Throwable throwable) {
+		synchronized (lock) {
+			if (target != null) {
+				logger.debug("Initial processor superseded by a reload");
+				return;
+			}
+			if (processor == null) {
+				logger.error("No processor available, dropping {} buffered input elements and further input until reloaded",buffer.size(),throwable);
+				failed = true;
+				buffer.clear();
+				lock.notifyAll();
+				return;
+			}
+			logger.info("Processor available, passing it {} buffered input elements",buffer.size());
+			connect(processor);
+		}
+	}
+
+	/**
+	 * Connect a new delegate processor, draining the previous one. Called holding the lock.
+	 */
+	private void connect(RxJavaProcessor<Object,Object> processor) {
+		int processorGeneration = ++generation;
+		PublishSubject<Object> processorInput = PublishSubject.create();
+		processor.process(processorInput).subscribe(new Observer<Object>() {
+			@Override
+			public void onNext(Object element) {
+				output.onNext(element);
+			}
+
+			@Override
+			public void onError(Throwable throwable) {
+				synchronized (lock) {
+					if (processorGeneration == generation) {
+						output.onError(throwable);
+					} else {
+						logger.error("Error whilst draining replaced processor (generation {})",processorGeneration,throwable);
+					}
+				}
+			}
+
+			@Override
+			public void onCompleted() {
+				synchronized (lock) {
+					// Replaced processors complete as they drain, only the current one completes the output
+					if (processorGeneration == generation && inputTermination != null) {
+						output.onCompleted();
+					}
+				}
+			}
+		});
+		Observer<Object> previousInput = target;
+		target = processorInput;
+		failed = false;
+		if (previousInput != null) {
+			previousInput.onCompleted();
+		}
+		for (Object element: buffer) {
+			processorInput.onNext(element);
+		}
+		buffer.clear();
+		if (inputTermination != null) {
+			inputTermination.accept(processorInput);
+		}
+		lock.notifyAll();
+	}
+
+}
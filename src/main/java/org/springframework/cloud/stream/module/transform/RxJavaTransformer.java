@@ -15,7 +15,13 @@
  */
 package org.springframework.cloud.stream.module.transform;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 
 import org.slf4j.Logger;
@@ -24,8 +30,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.stream.annotation.rxjava.EnableRxJavaProcessor;
 import org.springframework.cloud.stream.annotation.rxjava.RxJavaProcessor;
+import org.springframework.cloud.stream.module.transform.javacompiler.ArtifactFilter;
+import org.springframework.cloud.stream.module.transform.javacompiler.ClasspathIndex;
 import org.springframework.cloud.stream.module.transform.javacompiler.CompilationMessage;
 import org.springframework.cloud.stream.module.transform.javacompiler.CompilationResult;
+import org.springframework.cloud.stream.module.transform.javacompiler.CompiledClassCache;
+import org.springframework.cloud.stream.module.transform.javacompiler.CompiledClassDefinition;
+import org.springframework.cloud.stream.module.transform.javacompiler.ImportResolver;
+import org.springframework.cloud.stream.module.transform.javacompiler.PrecompiledClasses;
 import org.springframework.cloud.stream.module.transform.javacompiler.RuntimeJavaCompiler;
 import org.springframework.context.annotation.Bean;
 
@@ -48,50 +60,183 @@ public class RxJavaTransformer {
 	// Individual double-quote characters are represented by two double quotes in the DSL
 	private static final String DOUBLE_DOUBLE_QUOTE = Matcher.quoteReplacement("\"\"");
 
-	private final static String MAIN_COMPILED_CLASS_NAME = "org.springframework.cloud.stream.module.transform.RxClass";
+	final static String MAIN_COMPILED_CLASS_NAME = "org.springframework.cloud.stream.module.transform.RxClass";
 	
+	private final static String TEMPLATE_PACKAGE = "org.springframework.cloud.stream.module.transform";
+
 	/**
-	 * The user supplied code snippet is inserted into the template and then the result is compiled
+	 * The user supplied code snippet is inserted into the template, after the imports, and then the result is compiled
 	 */
 	private static String SOURCE_CODE_TEMPLATE = 
-			"package org.springframework.cloud.stream.module.transform;\n"+
-			"import java.util.*;\n"+ // Helpful to include this, what about also rx java math packages?
-			"import rx.observables.MathObservable;\n"+
-			"import static rx.observables.MathObservable.*;\n"+
-			"import org.springframework.cloud.stream.annotation.rxjava.*;\n"+
+			"package "+TEMPLATE_PACKAGE+";\n"+
+			"%s"+
+			"public class RxClass implements ProcessorFactory {\n"+
+			" public RxJavaProcessor<Object,Object> getProcessor() {\n"+
+			"  %s\n"+
+			" }\n"+
+			"}\n";
+
+	/**
+	 * Used when payload types are declared, the code snippet is inserted into a method returning
+	 * a processor of those types which is adapted to the bound processor by {@link TypedProcessors}
+	 */
+	private static String TYPED_SOURCE_CODE_TEMPLATE =
+			"package "+TEMPLATE_PACKAGE+";\n"+
+			"%s"+
 			"public class RxClass implements ProcessorFactory {\n"+
 			" public RxJavaProcessor<Object,Object> getProcessor() {\n"+
+			"  return TypedProcessors.adapt(getTypedProcessor(), %s.class);\n"+
+			" }\n"+
+			" public RxJavaProcessor<%s,%s> getTypedProcessor() {\n"+
 			"  %s\n"+
 			" }\n"+
 			"}\n";
 
+	/**
+	 * Always imported, any imports specified in the imports property are added to these
+	 */
+	private final static List<String> DEFAULT_IMPORTS = Collections.unmodifiableList(Arrays.asList(
+			"java.util.*",
+			"rx.observables.MathObservable",
+			"static rx.observables.MathObservable.*",
+			"static org.springframework.cloud.stream.module.transform.WindowAggregates.*",
+			"org.springframework.cloud.stream.annotation.rxjava.*"));
+
 	@Autowired
 	private RuntimeJavaCompiler compiler;
 	
 	@Autowired
 	private ProgrammableRxJavaProcessorProperties properties;
 
+	// Code compiled when the application was built, see SnippetPrecompiler
+	private final PrecompiledClasses precompiledClasses = new PrecompiledClasses(RxJavaTransformer.class.getClassLoader());
+
+	// Created on first use, only needed when using explicit imports
+	private ImportResolver importResolver;
+
+	// The declared payload types, resolved when the processor is created
+	private Class<?> inputType = Object.class;
+
+	private Class<?> outputType = Object.class;
+
+	private volatile ReloadableRxJavaProcessor reloadableProcessor;
+
+	private volatile String currentCode;
+
+	// The result whose classes the processor is using, released when the processor is reloaded
+	private CompilationResult currentCompilationResult;
+
 	/**
 	 * Produce an RxJavaProcessor instance by:<ul>
 	 * <li>Decoding the code property to process any newlines/double-double-quotes
 	 * <li>Insert the code into the source code template for a class
-	 * <li>Compiling the class using the JDK provided Java Compiler
+	 * <li>Compiling the class using the configured compiler, javac or ecj (or retrieving the result of
+	 * compiling it when the application was built, or of a previous compilation from the cache directory,
+	 * if one is configured)
 	 * <li>Loading the compiled class
 	 * <li>Invoking a well known method on the class to produce an RxJavaProcessor instance
 	 * <li>Returning that instance.
 	 * </ul>
+	 * If asynchronous compilation is enabled the compilation happens in the background and
+	 * the returned processor buffers its input until the compiled processor is available.
+	 * If reloading is enabled the returned processor can be switched to new code with
+	 * {@link #reload(String)}. Otherwise the compiled processor is returned directly.
 	 * 
 	 * @return an RxJavaProcessor instance
 	 */
 	@Bean
 	public RxJavaProcessor<Object,Object> processor() {
 		logger.info("Initial code property value :'{}'",properties.getCode());
- 		String code = decode(properties.getCode());
- 		if (code.startsWith("\"") && code.endsWith("\"")) {
- 			code = code.substring(1,code.length()-1);
- 		}
+		String code = decodeCodeProperty(properties.getCode());
 		logger.info("Processed code property value :\n{}\n",code);
-		CompilationResult compilationResult = buildAndCompileSourceCode(code);
+		configureCompiler();
+		ClassLoader classLoader = RxJavaTransformer.class.getClassLoader();
+		inputType = TypedProcessors.resolveType(properties.getInputType(), classLoader);
+		outputType = TypedProcessors.resolveType(properties.getOutputType(), classLoader);
+		boolean async = properties.isAsyncCompilation();
+		CompletableFuture<RxJavaProcessor<Object,Object>> processor =
+				buildAndCompileSourceCode(code, async).thenApply(compilationResult -> {
+					RxJavaProcessor<Object,Object> compiledProcessor = retrieveProcessor(compilationResult);
+					if (compiledProcessor == null) {
+						compiler.release(compilationResult);
+					} else {
+						inUse(compilationResult, code, true);
+					}
+					return compiledProcessor;
+				});
+		if (!async && processor.join() == null) {
+			return null;
+		}
+		if (!async && !properties.isReloadEnabled()) {
+			return processor.join();
+		}
+		reloadableProcessor = new ReloadableRxJavaProcessor(processor, properties.getAsyncCompilationBufferSize());
+		return reloadableProcessor;
+	}
+
+	/**
+	 * Compile new code and, if successful, switch the processor over to it. New messages go
+	 * to the new code whilst any state held by the old code (for example a partially filled
+	 * buffer) is flushed through.
+	 *
+	 * @param code the new code, for example <tt>return input -> input.buffer(5).map(list->list.get(0));</tt>
+	 * @return the result of compiling the new code, the processor is only changed if it was successful
+	 * @throws IllegalStateException if the processor has not been created or cannot be obtained from the compiled code
+	 */
+	public CompilationResult reload(String code) {
+		ReloadableRxJavaProcessor processor = this.reloadableProcessor;
+		if (processor == null) {
+			throw new IllegalStateException(properties.isReloadEnabled() || properties.isAsyncCompilation() ?
+					"There is no processor to reload" : "Reloading is not enabled, see the reloadEnabled property");
+		}
+		logger.info("Reloading processor with code:\n{}\n",code);
+		CompilationResult compilationResult = buildAndCompileSourceCode(code, false).join();
+		if (compilationResult.wasSuccessful()) {
+			RxJavaProcessor<Object,Object> newProcessor = retrieveProcessor(compilationResult);
+			if (newProcessor == null) {
+				compiler.release(compilationResult);
+				throw new IllegalStateException("Unable to obtain a processor from the compiled code");
+			}
+			processor.reload(newProcessor);
+			inUse(compilationResult, code, false);
+		} else {
+			logger.error("Compilation failed, processor not reloaded");
+		}
+		return compilationResult;
+	}
+
+	/**
+	 * Record the compilation result, and the code it was compiled from, that the processor is
+	 * now using. The classes of the result it was using before are no longer needed, releasing
+	 * them allows them to be unloaded once the old processor has finished with them.
+	 *
+	 * @param compilationResult the result now in use
+	 * @param code the code the result was compiled from
+	 * @param initial true if the result is from the initial compilation, if the processor has
+	 * already been reloaded before that completes the initial result is never used
+	 */
+	private synchronized void inUse(CompilationResult compilationResult, String code, boolean initial) {
+		CompilationResult previous = currentCompilationResult;
+		if (initial && previous != null) {
+			compiler.release(compilationResult);
+			return;
+		}
+		currentCompilationResult = compilationResult;
+		currentCode = code;
+		if (previous != null && previous != compilationResult) {
+			compiler.release(previous);
+		}
+	}
+
+	/**
+	 * @return the code the processor is currently running (after decoding of the code property),
+	 * or null if no code has compiled successfully yet
+	 */
+	public String getCurrentCode() {
+		return currentCode;
+	}
+
+	private RxJavaProcessor<Object,Object> retrieveProcessor(CompilationResult compilationResult) {
 		if (compilationResult.wasSuccessful()) {
 			List<Class<?>> clazzes = compilationResult.getCompiledClasses();
 			logger.info("Compilation resulted in this many classes: #{}",clazzes.size());
@@ -116,6 +261,24 @@ public class RxJavaTransformer {
 		return null;
 	} 
 
+	private void configureCompiler() {
+		if (properties.getClasspathScanParallelism() != null) {
+			ClasspathIndex.setScanParallelism(properties.getClasspathScanParallelism());
+		}
+		String compilerName = properties.getCompiler();
+		if (compilerName != null && !compilerName.equals(compiler.getCompilerBackend().getName())) {
+			compiler.setCompilerBackend(RuntimeJavaCompiler.createCompilerBackend(compilerName));
+		}
+		ArtifactFilter artifactFilter = ArtifactFilter.parse(properties.getCompileArtifacts());
+		if (!artifactFilter.equals(compiler.getArtifactFilter())) {
+			compiler.setArtifactFilter(artifactFilter);
+		}
+		File stubArchive = properties.getCompileStubs() == null ? null : new File(properties.getCompileStubs());
+		if (stubArchive == null ? compiler.getStubArchive() != null : !stubArchive.equals(compiler.getStubArchive())) {
+			compiler.setStubArchive(stubArchive);
+		}
+	}
+
 	/**
 	 * Create the source for and then compile and load a class that embodies
 	 * the supplied methodBody. The methodBody is inserted into a class template that
@@ -124,26 +287,172 @@ public class RxJavaTransformer {
 	 * declarations. An example methodBody would be <tt>return input -> input.buffer(5).map(list->list.get(0));</tt>.
 	 * 
 	 * @param methodBody the source code for a method that should return an  <tt>RxJavaProcessor&lt;Object,Object&gt;</tt>
-	 * @return the list of Classes produced by compiling and then loading the snippet of code
+	 * @param async if true compile on the compiler executor, otherwise the returned future is already complete
+	 * @return a future for the result of compiling and then loading the snippet of code
 	 */
-	private CompilationResult buildAndCompileSourceCode(String methodBody) {
-		String sourceCode = makeSourceClassDefinition(methodBody);
-		return compiler.compile(MAIN_COMPILED_CLASS_NAME,sourceCode);
+	private CompletableFuture<CompilationResult> buildAndCompileSourceCode(String methodBody, boolean async) {
+		String sourceCode = makeSourceClassDefinition(methodBody, properties, this::getImportResolver);
+		List<CompiledClassDefinition> precompiledClasses = this.precompiledClasses.get(MAIN_COMPILED_CLASS_NAME, sourceCode);
+		if (precompiledClasses != null) {
+			logger.info("Found code precompiled at build time");
+			return CompletableFuture.completedFuture(compiler.defineClasses(precompiledClasses));
+		}
+		if (!this.precompiledClasses.isEmpty()) {
+			logger.warn("Code was precompiled at build time but none matches, compiling. Check the snippet "+
+					"and the imports, explicitImports, inputType and outputType properties are the same as when precompiling");
+		}
+		if (properties.getCacheDirectory() != null) {
+			CompiledClassCache cache = new CompiledClassCache(new File(properties.getCacheDirectory()));
+			String cacheKey = cache.getKey(MAIN_COMPILED_CLASS_NAME, sourceCode);
+			List<CompiledClassDefinition> cachedClasses = cache.get(cacheKey);
+			if (cachedClasses != null) {
+				logger.info("Found previously compiled code in cache {} (key={})",cache.getDirectory(),cacheKey);
+				return CompletableFuture.completedFuture(compiler.defineClasses(cachedClasses));
+			}
+			return compile(sourceCode, async).thenApply(compilationResult -> {
+				if (compilationResult.wasSuccessful()) {
+					cache.put(cacheKey, compilationResult.getCompiledClassDefinitions());
+				}
+				return compilationResult;
+			});
+		}
+		return compile(sourceCode, async);
+	}
+
+	private CompletableFuture<CompilationResult> compile(String sourceCode, boolean async) {
+		if (async) {
+			return compiler.compileAsync(MAIN_COMPILED_CLASS_NAME, sourceCode);
+		}
+		return CompletableFuture.completedFuture(compiler.compile(MAIN_COMPILED_CLASS_NAME, sourceCode));
 	}
 
-	private static String decode(String input) {
-		return input.replaceAll(NEWLINE_ESCAPE, "\n").replaceAll(DOUBLE_DOUBLE_QUOTE, "\"");
+	/**
+	 * Decode the code property, processing any newlines/double-double-quotes and removing
+	 * surrounding quotes.
+	 *
+	 * @param code the value of the code property
+	 * @return the code to insert into the source code template
+	 */
+	public static String decodeCodeProperty(String code) {
+		code = code.replaceAll(NEWLINE_ESCAPE, "\n").replaceAll(DOUBLE_DOUBLE_QUOTE, "\"");
+		if (code.startsWith("\"") && code.endsWith("\"")) {
+			code = code.substring(1,code.length()-1);
+		}
+		return code;
 	}
 	
+	/**
+	 * Determine the imports for the class: the default imports plus those from the imports property.
+	 * If explicit imports are being used on-demand imports are replaced by imports of just the
+	 * types and members the method body refers to.
+	 */
+	private static List<String> getImports(String methodBody, ProgrammableRxJavaProcessorProperties properties,
+			Class<?> inputType, Class<?> outputType, Supplier<ImportResolver> importResolver) {
+		List<String> imports = new ArrayList<>(DEFAULT_IMPORTS);
+		if (properties.getImports() != null) {
+			for (String importString: properties.getImports().split(",")) {
+				importString = importString.trim();
+				if (importString.endsWith(";")) {
+					importString = importString.substring(0, importString.length() - 1).trim();
+				}
+				if (importString.length() != 0 && !imports.contains(importString)) {
+					imports.add(importString);
+				}
+			}
+		}
+		if (properties.isExplicitImports()) {
+			// The template itself refers to types that need importing
+			String sourceWithoutImports = makeSourceClassDefinition(methodBody, Collections.<String>emptyList(), inputType, outputType);
+			imports = importResolver.get().resolve(imports, TEMPLATE_PACKAGE, sourceWithoutImports);
+		}
+		return imports;
+	}
+
+	private synchronized ImportResolver getImportResolver() {
+		if (importResolver == null) {
+			importResolver = new ImportResolver(RxJavaTransformer.class.getClassLoader(), compiler.getArtifactFilter());
+		}
+		return importResolver;
+	}
+
+	/**
+	 * Make a full source code definition for a class from the method body as the properties
+	 * configure it: the imports, explicitImports, inputType and outputType properties are applied.
+	 * The processor and the {@link SnippetPrecompiler} both build the source this way, so code
+	 * precompiled with the same properties is found when the application starts.
+	 * 
+	 * @param methodBody the code to insert into the RxJava source class template
+	 * @param properties the processor properties
+	 * @param importResolver supplies the resolver used if the explicitImports property is set
+	 * @return a complete Java Class definition
+	 */
+	public static String makeSourceClassDefinition(String methodBody, ProgrammableRxJavaProcessorProperties properties,
+			Supplier<ImportResolver> importResolver) {
+		ClassLoader classLoader = RxJavaTransformer.class.getClassLoader();
+		Class<?> inputType = TypedProcessors.resolveType(properties.getInputType(), classLoader);
+		Class<?> outputType = TypedProcessors.resolveType(properties.getOutputType(), classLoader);
+		return makeSourceClassDefinition(methodBody, getImports(methodBody, properties, inputType, outputType, importResolver),
+				inputType, outputType);
+	}
+
 	/**
 	 * Make a full source code definition for a class by applying the specified method body
-	 * to the RxJava template.
+	 * to the RxJava template, with the default imports.
 	 * 
 	 * @param methodBody the code to insert into the RxJava source class template
 	 * @return a complete Java Class definition
 	 */
 	public static String makeSourceClassDefinition(String methodBody) {
-		return String.format(SOURCE_CODE_TEMPLATE, methodBody);
+		return makeSourceClassDefinition(methodBody, DEFAULT_IMPORTS);
+	}
+
+	/**
+	 * Make a full source code definition for a class by applying the specified method body
+	 * to the RxJava template.
+	 * 
+	 * @param methodBody the code to insert into the RxJava source class template
+	 * @param imports the imports for the class (e.g. <tt>java.util.*</tt>, <tt>static a.b.C.*</tt>)
+	 * @return a complete Java Class definition
+	 */
+	public static String makeSourceClassDefinition(String methodBody, List<String> imports) {
+		return makeSourceClassDefinition(methodBody, imports, Object.class, Object.class);
+	}
+
+	/**
+	 * Make a full source code definition for a class by applying the specified method body
+	 * to the RxJava template, with the default imports, for a processor of the specified payload types.
+	 * 
+	 * @param methodBody the code to insert into the RxJava source class template
+	 * @param inputType the type of the input payloads
+	 * @param outputType the type of the output payloads
+	 * @return a complete Java Class definition
+	 */
+	public static String makeSourceClassDefinition(String methodBody, Class<?> inputType, Class<?> outputType) {
+		return makeSourceClassDefinition(methodBody, DEFAULT_IMPORTS, inputType, outputType);
+	}
+
+	/**
+	 * Make a full source code definition for a class by applying the specified method body
+	 * to the RxJava template. If either payload type is not Object the method body returns
+	 * a processor of those types, for example <tt>RxJavaProcessor&lt;Integer,String&gt;</tt>.
+	 * 
+	 * @param methodBody the code to insert into the RxJava source class template
+	 * @param imports the imports for the class (e.g. <tt>java.util.*</tt>, <tt>static a.b.C.*</tt>)
+	 * @param inputType the type of the input payloads
+	 * @param outputType the type of the output payloads
+	 * @return a complete Java Class definition
+	 */
+	public static String makeSourceClassDefinition(String methodBody, List<String> imports, Class<?> inputType, Class<?> outputType) {
+		StringBuilder importDeclarations = new StringBuilder();
+		for (String importString: imports) {
+			importDeclarations.append("import ").append(importString).append(";\n");
+		}
+		if (inputType == Object.class && outputType == Object.class) {
+			return String.format(SOURCE_CODE_TEMPLATE, importDeclarations, methodBody);
+		}
+		String inputTypeName = inputType.getCanonicalName();
+		return String.format(TYPED_SOURCE_CODE_TEMPLATE, importDeclarations, inputTypeName, inputTypeName,
+				outputType.getCanonicalName(), methodBody);
 	}
 	
 }
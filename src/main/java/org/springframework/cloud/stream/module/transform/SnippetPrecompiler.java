@@ -0,0 +1,145 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.MutablePropertyValues;
+import org.springframework.boot.bind.RelaxedDataBinder;
+import org.springframework.cloud.stream.module.transform.javacompiler.ArtifactFilter;
+import org.springframework.cloud.stream.module.transform.javacompiler.CompilationResult;
+import org.springframework.cloud.stream.module.transform.javacompiler.ImportResolver;
+import org.springframework.cloud.stream.module.transform.javacompiler.PrecompiledClasses;
+import org.springframework.cloud.stream.module.transform.javacompiler.RuntimeJavaCompiler;
+
+/**
+ * Compiles code snippets when the application is built, run by the <tt>precompile</tt> maven
+ * profile. Each snippet file contains a value for the code property, exactly as it will be
+ * supplied at runtime. The snippet is inserted into the same template the {@link RxJavaTransformer}
+ * uses and the compiled classes are written into the output directory, from where they are
+ * packaged into the jar. When the application runs with that code the classes are loaded
+ * without any compilation. The source also depends on the imports, explicitImports, inputType
+ * and outputType properties, these are passed as <tt>--name=value</tt> arguments and must have
+ * the values the application will run with.
+ *
+ * @author agent
+ */
+public class SnippetPrecompiler {
+
+	private static Logger logger = LoggerFactory.getLogger(SnippetPrecompiler.class);
+
+	private final RuntimeJavaCompiler compiler;
+
+	private final ProgrammableRxJavaProcessorProperties properties;
+
+	private ImportResolver importResolver;
+
+	public SnippetPrecompiler() {
+		this(new ProgrammableRxJavaProcessorProperties());
+	}
+
+	/**
+	 * @param properties the properties the application will run with
+	 */
+	public SnippetPrecompiler(ProgrammableRxJavaProcessorProperties properties) {
+		this.properties = properties;
+		compiler = new RuntimeJavaCompiler();
+		compiler.setCompilationResultCache(null);
+		compiler.setArtifactFilter(ArtifactFilter.parse(properties.getCompileArtifacts()));
+	}
+
+	/**
+	 * @param args the output directory (e.g. target/classes) followed by property values (e.g.
+	 * <tt>--inputType=Integer</tt>) and snippet files, or directories containing snippet files
+	 * @throws IOException if a snippet cannot be read or the compiled classes cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			throw new IllegalArgumentException("Usage: SnippetPrecompiler <outputDirectory> [--property=value...] [snippetFileOrDirectory...]");
+		}
+		File outputDirectory = new File(args[0]);
+		List<File> snippetFiles = new ArrayList<>();
+		MutablePropertyValues propertyValues = new MutablePropertyValues();
+		for (int i = 1; i < args.length; i++) {
+			if (args[i].startsWith("--")) {
+				int equals = args[i].indexOf('=');
+				if (equals == -1) {
+					throw new IllegalArgumentException("Property value must be of the form --property=value: "+args[i]);
+				}
+				propertyValues.add(args[i].substring(2, equals), args[i].substring(equals + 1));
+				continue;
+			}
+			File file = new File(args[i]);
+			if (file.isDirectory()) {
+				File[] files = file.listFiles();
+				Arrays.sort(files);
+				for (File f: files) {
+					if (f.isFile()) {
+						snippetFiles.add(f);
+					}
+				}
+			} else if (file.isFile()) {
+				snippetFiles.add(file);
+			} else {
+				logger.warn("Snippet file does not exist: {}",file);
+			}
+		}
+		ProgrammableRxJavaProcessorProperties properties = new ProgrammableRxJavaProcessorProperties();
+		new RelaxedDataBinder(properties).bind(propertyValues);
+		SnippetPrecompiler precompiler = new SnippetPrecompiler(properties);
+		for (File snippetFile: snippetFiles) {
+			precompiler.precompile(snippetFile, outputDirectory);
+		}
+		logger.info("Precompiled {} snippets into {}",snippetFiles.size(),outputDirectory);
+	}
+
+	/**
+	 * @param snippetFile a file containing a value for the code property
+	 * @param outputDirectory the root of the classes directory
+	 * @return the file the compiled classes were written to
+	 * @throws IOException if the snippet cannot be read or the compiled classes cannot be written
+	 * @throws IllegalStateException if the snippet does not compile
+	 */
+	public File precompile(File snippetFile, File outputDirectory) throws IOException {
+		String code = new String(Files.readAllBytes(snippetFile.toPath()), StandardCharsets.UTF_8).trim();
+		String sourceCode = RxJavaTransformer.makeSourceClassDefinition(RxJavaTransformer.decodeCodeProperty(code),
+				properties, this::getImportResolver);
+		CompilationResult compilationResult = compiler.compile(RxJavaTransformer.MAIN_COMPILED_CLASS_NAME, sourceCode);
+		if (!compilationResult.wasSuccessful()) {
+			throw new IllegalStateException("Failed to compile snippet "+snippetFile+":\n"+compilationResult.getCompilationMessages());
+		}
+		File file = PrecompiledClasses.write(outputDirectory, RxJavaTransformer.MAIN_COMPILED_CLASS_NAME, sourceCode,
+				compilationResult.getCompiledClassDefinitions());
+		logger.info("Precompiled snippet {} to {}",snippetFile,file);
+		return file;
+	}
+
+	private ImportResolver getImportResolver() {
+		if (importResolver == null) {
+			importResolver = new ImportResolver(SnippetPrecompiler.class.getClassLoader(), compiler.getArtifactFilter());
+		}
+		return importResolver;
+	}
+
+}
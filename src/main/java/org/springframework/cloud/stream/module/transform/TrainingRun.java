@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.cloud.stream.annotation.rxjava.RxJavaProcessor;
+import org.springframework.cloud.stream.module.transform.javacompiler.CompilationResult;
+import org.springframework.cloud.stream.module.transform.javacompiler.RuntimeJavaCompiler;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import rx.Observable;
+
+/**
+ * Starts the application, compiles and runs a representative snippet and then exits. Used as
+ * the training run when creating a class data sharing archive (see <tt>scripts/appcds.sh</tt>)
+ * so that the archive contains the Spring, compiler and RxJava classes loaded during
+ * startup and by the first messages.
+ *
+ * @author agent
+ */
+public class TrainingRun {
+
+	private static Logger logger = LoggerFactory.getLogger(TrainingRun.class);
+
+	/**
+	 * Exercises type inference, lambdas, method references and a range of operators, including
+	 * those from MathObservable.
+	 */
+	public final static String TRAINING_CODE =
+			"return input -> input.map(s->Integer.valueOf(s.toString()))" +
+			".filter(i->i>=0).buffer(5).map(list->list.get(0))" +
+			".window(3).flatMap(MathObservable::averageInteger);";
+
+	public static void main(String[] args) {
+		SpringApplication application = ProgrammableRxJavaProcessorApplication.createApplication();
+		// Unless other code is specified, the processor created at startup is compiled from the training code
+		application.setDefaultProperties(Collections.<String,Object>singletonMap("code", TRAINING_CODE));
+		ConfigurableApplicationContext context = application.run(args);
+		int exitCode = 0;
+		try {
+			long stime = System.currentTimeMillis();
+			RuntimeJavaCompiler compiler = context.getBean(RuntimeJavaCompiler.class);
+			CompilationResult compilationResult = compiler.compile(RxJavaTransformer.MAIN_COMPILED_CLASS_NAME,
+					RxJavaTransformer.makeSourceClassDefinition(TRAINING_CODE));
+			if (!compilationResult.wasSuccessful()) {
+				throw new IllegalStateException("Training code did not compile: "+compilationResult.getCompilationMessages());
+			}
+			ProcessorFactory processorFactory = (ProcessorFactory)compilationResult.getCompiledClasses().get(0).newInstance();
+			RxJavaProcessor<Object,Object> processor = processorFactory.getProcessor();
+			List<Object> output = processor.process(Observable.range(0, 150).map(i -> (Object)i.toString()))
+					.toList().toBlocking().single();
+			logger.info("Training run compiled and processed {} results in {}ms",output.size(),(System.currentTimeMillis()-stime));
+		} catch (Exception e) {
+			logger.error("Training run failed",e);
+			exitCode = 1;
+		}
+		System.exit(SpringApplication.exit(context, () -> 0) + exitCode);
+	}
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform;
+
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.cloud.stream.annotation.rxjava.RxJavaProcessor;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.util.ClassUtils;
+
+import rx.Observable;
+import rx.functions.Func1;
+
+/**
+ * Support for processors whose code is written against declared payload types (see the
+ * inputType and outputType properties) rather than Object. Payloads are converted to the
+ * input type once, as they arrive from the input channel, so the code needs no casts. The
+ * output is passed to the output channel as it is.
+ *
+ * @author agent
+ */
+public class TypedProcessors {
+
+	private final static ConversionService conversionService = new DefaultConversionService();
+
+	/**
+	 * Used by the generated code to adapt a typed processor to the one that is bound.
+	 *
+	 * @param processor the processor working on the declared types
+	 * @param inputType the declared input payload type
+	 * @return a processor that converts its input to the input type and passes it to the typed processor
+	 */
+	@SuppressWarnings("unchecked")
+	public static <I> RxJavaProcessor<Object,Object> adapt(RxJavaProcessor<I,?> processor, Class<I> inputType) {
+		Func1<Object,I> converter = converterFor(inputType);
+		// The output only needs widening to Object, no per message operation is required for that
+		return input -> (Observable<Object>)processor.process(input.map(converter));
+	}
+
+	/**
+	 * Create a converter to the specified type, chosen once rather than for every payload.
+	 * Payloads already of that type are passed through, byte arrays (as received from a binder)
+	 * are treated as UTF-8 text, anything else is converted with the default conversion service
+	 * (for example <tt>"42"</tt> to the Integer 42).
+	 *
+	 * @param type the type to convert payloads to
+	 * @return a function converting payloads to that type
+	 */
+	public static <T> Func1<Object,T> converterFor(Class<T> type) {
+		if (type == Object.class) {
+			return payload -> type.cast(payload);
+		}
+		return payload -> {
+			if (type.isInstance(payload)) {
+				return type.cast(payload);
+			}
+			if (payload instanceof byte[] && type != byte[].class) {
+				payload = new String((byte[])payload, StandardCharsets.UTF_8);
+			}
+			return conversionService.convert(payload, type);
+		};
+	}
+
+	/**
+	 * Resolve the name of a payload type. Primitive types are resolved to their wrapper, the
+	 * package may be omitted for types in <tt>java.lang</tt>.
+	 *
+	 * @param typeName the name of the type (e.g. <tt>int</tt>, <tt>Integer</tt>, <tt>byte[]</tt>, <tt>java.util.Date</tt>), if null or empty Object is used
+	 * @param classLoader the class loader to load the type with
+	 * @return the type
+	 * @throws IllegalArgumentException if the type cannot be found
+	 */
+	public static Class<?> resolveType(String typeName, ClassLoader classLoader) {
+		if (typeName == null || typeName.trim().length() == 0) {
+			return Object.class;
+		}
+		typeName = typeName.trim();
+		if (typeName.indexOf('.') == -1 && ClassUtils.isPresent("java.lang." + typeName, classLoader)) {
+			typeName = "java.lang." + typeName;
+		}
+		try {
+			return ClassUtils.resolvePrimitiveIfNecessary(ClassUtils.forName(typeName, classLoader));
+		} catch (ClassNotFoundException | LinkageError e) {
+			throw new IllegalArgumentException("Unknown payload type "+typeName, e);
+		}
+	}
+
+}
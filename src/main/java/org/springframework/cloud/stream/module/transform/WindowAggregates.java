@@ -0,0 +1,320 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform;
+
+import java.util.concurrent.TimeUnit;
+
+import rx.Observable;
+import rx.Observable.Operator;
+import rx.Observable.Transformer;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.functions.Func1;
+import rx.schedulers.Schedulers;
+
+/**
+ * Aggregation operators for streams of numbers, over windows of a number of values or a
+ * period of time. They are statically imported by the code template, for example:
+ * <tt>return input -> input.map(s->Integer.valueOf((String)s)).compose(windowAverage(3));</tt>
+ * is an equivalent of <tt>window(3).flatMap(MathObservable::averageInteger)</tt> (producing
+ * a Double rather than truncating to an Integer). Values are accumulated into primitive
+ * fields of a single subscriber, nothing is allocated per value and no Observable is created
+ * per window, only the result of each window is allocated.
+ * <p>
+ * Count based windows emit after every <tt>count</tt> values and emit a final partial
+ * window on completion. Time based windows emit at the end of each period, an empty window
+ * produces a count and sum of 0 and is otherwise skipped (its average, minimum, maximum and
+ * variance are undefined).
+ *
+ * @author agent
+ */
+public class WindowAggregates {
+
+	private final static Func1<WindowStatistics, Boolean> NOT_EMPTY = statistics -> statistics.getCount() != 0;
+
+	/**
+	 * @param count the number of values in each window
+	 * @return a transformer producing the statistics of each window
+	 */
+	public static Transformer<Number, WindowStatistics> windowStatistics(int count) {
+		if (count < 1) {
+			throw new IllegalArgumentException("Window count must be at least 1 but was "+count);
+		}
+		return source -> source.lift(new CountWindowOperator(count));
+	}
+
+	/**
+	 * @param timespan the period of each window
+	 * @param unit the unit of the timespan
+	 * @return a transformer producing the statistics of each window
+	 */
+	public static Transformer<Number, WindowStatistics> windowStatistics(long timespan, TimeUnit unit) {
+		return windowStatistics(timespan, unit, Schedulers.computation());
+	}
+
+	/**
+	 * @param timespan the period of each window
+	 * @param unit the unit of the timespan
+	 * @param scheduler the scheduler on which the end of each window is signalled
+	 * @return a transformer producing the statistics of each window
+	 */
+	public static Transformer<Number, WindowStatistics> windowStatistics(long timespan, TimeUnit unit, Scheduler scheduler) {
+		if (timespan <= 0) {
+			throw new IllegalArgumentException("Window timespan must be positive but was "+timespan);
+		}
+		return source -> source.lift(new TimeWindowOperator(timespan, unit, scheduler));
+	}
+
+	public static Transformer<Number, Long> windowCount(long timespan, TimeUnit unit) {
+		return source -> source.compose(windowStatistics(timespan, unit)).map(WindowStatistics::getCount);
+	}
+
+	public static Transformer<Number, Double> windowSum(int count) {
+		return source -> source.compose(windowStatistics(count)).map(WindowStatistics::getSum);
+	}
+
+	public static Transformer<Number, Double> windowSum(long timespan, TimeUnit unit) {
+		return source -> source.compose(windowStatistics(timespan, unit)).map(WindowStatistics::getSum);
+	}
+
+	public static Transformer<Number, Double> windowMin(int count) {
+		return source -> source.compose(windowStatistics(count)).map(WindowStatistics::getMin);
+	}
+
+	public static Transformer<Number, Double> windowMin(long timespan, TimeUnit unit) {
+		return source -> source.compose(windowStatistics(timespan, unit)).filter(NOT_EMPTY).map(WindowStatistics::getMin);
+	}
+
+	public static Transformer<Number, Double> windowMax(int count) {
+		return source -> source.compose(windowStatistics(count)).map(WindowStatistics::getMax);
+	}
+
+	public static Transformer<Number, Double> windowMax(long timespan, TimeUnit unit) {
+		return source -> source.compose(windowStatistics(timespan, unit)).filter(NOT_EMPTY).map(WindowStatistics::getMax);
+	}
+
+	public static Transformer<Number, Double> windowAverage(int count) {
+		return source -> source.compose(windowStatistics(count)).map(WindowStatistics::getAverage);
+	}
+
+	public static Transformer<Number, Double> windowAverage(long timespan, TimeUnit unit) {
+		return source -> source.compose(windowStatistics(timespan, unit)).filter(NOT_EMPTY).map(WindowStatistics::getAverage);
+	}
+
+	public static Transformer<Number, Double> windowVariance(int count) {
+		return source -> source.compose(windowStatistics(count)).map(WindowStatistics::getVariance);
+	}
+
+	public static Transformer<Number, Double> windowVariance(long timespan, TimeUnit unit) {
+		return source -> source.compose(windowStatistics(timespan, unit)).filter(NOT_EMPTY).map(WindowStatistics::getVariance);
+	}
+
+	/**
+	 * Accumulates values into primitive fields, the mean and variance are computed with
+	 * Welford's algorithm to avoid the loss of precision of summing squares.
+	 */
+	private static class Accumulator {
+
+		long count;
+
+		double sum;
+
+		double min = Double.NaN;
+
+		double max = Double.NaN;
+
+		double mean;
+
+		double m2;
+
+		void add(double value) {
+			if (count++ == 0) {
+				min = value;
+				max = value;
+			} else {
+				if (value < min) {
+					min = value;
+				}
+				if (value > max) {
+					max = value;
+				}
+			}
+			sum += value;
+			double delta = value - mean;
+			mean += delta / count;
+			m2 += delta * (value - mean);
+		}
+
+		WindowStatistics complete() {
+			WindowStatistics statistics = new WindowStatistics(count, sum, min, max, mean, m2);
+			count = 0;
+			sum = 0;
+			min = Double.NaN;
+			max = Double.NaN;
+			mean = 0;
+			m2 = 0;
+			return statistics;
+		}
+	}
+
+	private static class CountWindowOperator implements Operator<WindowStatistics, Number> {
+
+		private final int count;
+
+		CountWindowOperator(int count) {
+			this.count = count;
+		}
+
+		@Override
+		public Subscriber<? super Number> call(Subscriber<? super WindowStatistics> child) {
+			CountWindowSubscriber parent = new CountWindowSubscriber(child, count);
+			child.add(parent);
+			child.setProducer(parent::requestWindows);
+			return parent;
+		}
+	}
+
+	private static class CountWindowSubscriber extends Subscriber<Number> {
+
+		private final Subscriber<? super WindowStatistics> child;
+
+		private final int count;
+
+		private final Accumulator accumulator = new Accumulator();
+
+		CountWindowSubscriber(Subscriber<? super WindowStatistics> child, int count) {
+			this.child = child;
+			this.count = count;
+			// Nothing is requested until the child requests windows
+			request(0);
+		}
+
+		void requestWindows(long n) {
+			if (n > 0) {
+				request(n >= Long.MAX_VALUE / count ? Long.MAX_VALUE : n * count);
+			}
+		}
+
+		@Override
+		public void onNext(Number value) {
+			accumulator.add(value.doubleValue());
+			if (accumulator.count == count) {
+				child.onNext(accumulator.complete());
+			}
+		}
+
+		@Override
+		public void onError(Throwable e) {
+			child.onError(e);
+		}
+
+		@Override
+		public void onCompleted() {
+			if (accumulator.count != 0) {
+				child.onNext(accumulator.complete());
+			}
+			child.onCompleted();
+		}
+	}
+
+	private static class TimeWindowOperator implements Operator<WindowStatistics, Number> {
+
+		private final long timespan;
+
+		private final TimeUnit unit;
+
+		private final Scheduler scheduler;
+
+		TimeWindowOperator(long timespan, TimeUnit unit, Scheduler scheduler) {
+			this.timespan = timespan;
+			this.unit = unit;
+			this.scheduler = scheduler;
+		}
+
+		@Override
+		public Subscriber<? super Number> call(Subscriber<? super WindowStatistics> child) {
+			Scheduler.Worker worker = scheduler.createWorker();
+			TimeWindowSubscriber parent = new TimeWindowSubscriber(child, worker);
+			child.add(worker);
+			child.add(parent);
+			worker.schedulePeriodically(parent::endWindow, timespan, timespan, unit);
+			return parent;
+		}
+	}
+
+	/**
+	 * Values and the ends of windows arrive on different threads, the accumulator is guarded by this.
+	 */
+	private static class TimeWindowSubscriber extends Subscriber<Number> {
+
+		private final Subscriber<? super WindowStatistics> child;
+
+		private final Scheduler.Worker worker;
+
+		private final Accumulator accumulator = new Accumulator();
+
+		private boolean done;
+
+		TimeWindowSubscriber(Subscriber<? super WindowStatistics> child, Scheduler.Worker worker) {
+			this.child = child;
+			this.worker = worker;
+		}
+
+		@Override
+		public void onStart() {
+			// Time decides when windows are emitted, so upstream is not limited by downstream demand
+			request(Long.MAX_VALUE);
+		}
+
+		@Override
+		public void onNext(Number value) {
+			double doubleValue = value.doubleValue();
+			synchronized (this) {
+				if (!done) {
+					accumulator.add(doubleValue);
+				}
+			}
+		}
+
+		@Override
+		public synchronized void onError(Throwable e) {
+			if (!done) {
+				done = true;
+				worker.unsubscribe();
+				child.onError(e);
+			}
+		}
+
+		@Override
+		public synchronized void onCompleted() {
+			if (!done) {
+				done = true;
+				worker.unsubscribe();
+				if (accumulator.count != 0) {
+					child.onNext(accumulator.complete());
+				}
+				child.onCompleted();
+			}
+		}
+
+		synchronized void endWindow() {
+			if (!done) {
+				child.onNext(accumulator.complete());
+			}
+		}
+	}
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform;
+
+/**
+ * The count, sum, minimum, maximum, mean and variance of the numbers in one window, as
+ * produced by the {@link WindowAggregates} operators.
+ *
+ * @author agent
+ */
+public class WindowStatistics {
+
+	private final long count;
+
+	private final double sum;
+
+	private final double min;
+
+	private final double max;
+
+	private final double mean;
+
+	// Sum of the squared differences from the mean
+	private final double m2;
+
+	WindowStatistics(long count, double sum, double min, double max, double mean, double m2) {
+		this.count = count;
+		this.sum = sum;
+		this.min = min;
+		this.max = max;
+		this.mean = mean;
+		this.m2 = m2;
+	}
+
+	/**
+	 * @return the number of values in the window
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the sum of the values, 0 for an empty window
+	 */
+	public double getSum() {
+		return sum;
+	}
+
+	/**
+	 * @return the smallest value, NaN for an empty window
+	 */
+	public double getMin() {
+		return min;
+	}
+
+	/**
+	 * @return the largest value, NaN for an empty window
+	 */
+	public double getMax() {
+		return max;
+	}
+
+	/**
+	 * @return the mean of the values, NaN for an empty window
+	 */
+	public double getAverage() {
+		return count == 0 ? Double.NaN : mean;
+	}
+
+	/**
+	 * @return the population variance of the values, NaN for an empty window
+	 */
+	public double getVariance() {
+		return count == 0 ? Double.NaN : m2 / count;
+	}
+
+	/**
+	 * @return the population standard deviation of the values, NaN for an empty window
+	 */
+	public double getStandardDeviation() {
+		return Math.sqrt(getVariance());
+	}
+
+	public String toString() {
+		return "WindowStatistics(count="+count+",sum="+sum+",min="+min+",max="+max+",average="+getAverage()+
+				",variance="+getVariance()+")";
+	}
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform.javacompiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded pool of open archives, shared across compilations. Rather than holding on to
+ * an archive, file objects ask the pool for it each time they need their content. When the
+ * pool is full the least recently used archive is dropped and will be mapped again if it
+ * is needed later. Nested archives (jars inside jars) are pooled alongside the archives
+ * that contain them.
+ *
+ * @author agent
+ */
+public class ArchivePool {
+
+	private final static Logger logger = LoggerFactory.getLogger(ArchivePool.class);
+
+	public final static int DEFAULT_MAXIMUM_SIZE = 512;
+
+	private final static ArchivePool sharedPool = new ArchivePool(DEFAULT_MAXIMUM_SIZE);
+
+	private int maximumSize;
+
+	// Access ordered so that iteration starts with the least recently used archive
+	private final LinkedHashMap<String, MappedArchive> archives = new LinkedHashMap<String, MappedArchive>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, MappedArchive> eldest) {
+			if (size() > maximumSize) {
+				evictions.incrementAndGet();
+				return true;
+			}
+			return false;
+		}
+	};
+
+	private final AtomicLong opens = new AtomicLong();
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	public ArchivePool(int maximumSize) {
+		setMaximumSize(maximumSize);
+	}
+
+	/**
+	 * @return the pool used by the shared classpath indexes
+	 */
+	public static ArchivePool getSharedPool() {
+		return sharedPool;
+	}
+
+	public synchronized void setMaximumSize(int maximumSize) {
+		if (maximumSize < 1) {
+			throw new IllegalArgumentException("Maximum size must be at least 1: "+maximumSize);
+		}
+		this.maximumSize = maximumSize;
+	}
+
+	public synchronized int getMaximumSize() {
+		return maximumSize;
+	}
+
+	/**
+	 * @param file a zip/jar file
+	 * @return the mapped archive for that file
+	 * @throws IOException if the file cannot be mapped
+	 */
+	public MappedArchive getArchive(File file) throws IOException {
+		String key = file.getPath();
+		MappedArchive archive = lookup(key);
+		if (archive == null) {
+			archive = store(key, MappedArchive.open(file));
+		}
+		return archive;
+	}
+
+	/**
+	 * @param outerFile a zip/jar file
+	 * @param entry the number of an entry in that archive that is itself an archive
+	 * @return the mapped archive for the nested archive
+	 * @throws IOException if either archive cannot be mapped
+	 */
+	public MappedArchive getNestedArchive(File outerFile, int entry) throws IOException {
+		String key = outerFile.getPath() + "!" + entry;
+		MappedArchive archive = lookup(key);
+		if (archive == null) {
+			MappedArchive outerArchive = getArchive(outerFile);
+			archive = store(key, MappedArchive.open(outerFile.getPath() + "!" + outerArchive.getEntryName(entry), outerArchive.getContent(entry)));
+		}
+		return archive;
+	}
+
+	private synchronized MappedArchive lookup(String key) {
+		MappedArchive archive = archives.get(key);
+		if (archive != null) {
+			hits.incrementAndGet();
+		}
+		return archive;
+	}
+
+	// Archives are mapped without holding the lock so that concurrent scans of different
+	// archives do not queue up behind each other. If two threads map the same archive the
+	// first one stored wins and only that one is counted as opened.
+	private synchronized MappedArchive store(String key, MappedArchive archive) {
+		MappedArchive existing = archives.get(key);
+		if (existing != null) {
+			return existing;
+		}
+		opens.incrementAndGet();
+		archives.put(key, archive);
+		return archive;
+	}
+
+	public synchronized int size() {
+		return archives.size();
+	}
+
+	/**
+	 * Drop all pooled archives. Mappings are released once they are no longer referenced.
+	 */
+	public synchronized void clear() {
+		logger.debug("Clearing archive pool {}",this);
+		archives.clear();
+	}
+
+	public long getOpenCount() {
+		return opens.get();
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	public String toString() {
+		return "ArchivePool(size=" + size() + ",maximumSize=" + getMaximumSize() + ",opens=" + getOpenCount() +
+				",hits=" + getHitCount() + ",evictions=" + getEvictionCount() + ")";
+	}
+
+}
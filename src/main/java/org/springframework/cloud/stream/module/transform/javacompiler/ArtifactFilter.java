@@ -0,0 +1,117 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform.javacompiler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Determines which jars on the classpath are visible to the compiler. Jars are matched by
+ * artifact id: <tt>rxjava</tt> matches <tt>rxjava-1.1.0.jar</tt> but not <tt>rxjava-math-1.0.0.jar</tt>.
+ * The filter applies to jars on the classpath and to those nested in a spring boot jar,
+ * directories and the classes of the spring boot jar the application was launched from
+ * are always visible. Compiling against fewer jars means fewer are scanned and mapped.
+ *
+ * @author agent
+ */
+public class ArtifactFilter {
+
+	/**
+	 * Allows every jar.
+	 */
+	public final static ArtifactFilter ALL = new ArtifactFilter(null);
+
+	private final static String WILDCARD = "*";
+
+	private final static String JAR_SUFFIX = ".jar";
+
+	// Null when all jars are allowed
+	private final List<String> artifactIds;
+
+	private ArtifactFilter(List<String> artifactIds) {
+		this.artifactIds = artifactIds;
+	}
+
+	/**
+	 * @param artifactIds the artifact ids of the jars to allow
+	 * @return a filter allowing jars with those artifact ids
+	 */
+	public static ArtifactFilter forArtifacts(List<String> artifactIds) {
+		List<String> sortedArtifactIds = new ArrayList<>(artifactIds);
+		Collections.sort(sortedArtifactIds);
+		return new ArtifactFilter(Collections.unmodifiableList(sortedArtifactIds));
+	}
+
+	/**
+	 * @param artifactIds comma separated artifact ids, or <tt>*</tt> to allow every jar
+	 * @return a filter allowing the specified jars
+	 */
+	public static ArtifactFilter parse(String artifactIds) {
+		List<String> ids = new ArrayList<>();
+		for (String id: artifactIds.split(",")) {
+			id = id.trim();
+			if (id.equals(WILDCARD)) {
+				return ALL;
+			}
+			if (id.length() != 0) {
+				ids.add(id);
+			}
+		}
+		return forArtifacts(ids);
+	}
+
+	/**
+	 * @param path the path of a jar, for example <tt>/a/b/rxjava-1.1.0.jar</tt> or <tt>lib/rxjava-1.1.0.jar</tt>
+	 * @return true if the jar is allowed
+	 */
+	public boolean accept(String path) {
+		if (artifactIds == null) {
+			return true;
+		}
+		String name = path.substring(Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1);
+		for (String artifactId: artifactIds) {
+			// The artifact id is followed by the version, which starts with a digit
+			if (name.length() > artifactId.length() + 1 && name.startsWith(artifactId) &&
+					name.charAt(artifactId.length()) == '-' && Character.isDigit(name.charAt(artifactId.length() + 1))) {
+				return true;
+			}
+			if (name.equals(artifactId + JAR_SUFFIX)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof ArtifactFilter)) {
+			return false;
+		}
+		List<String> otherArtifactIds = ((ArtifactFilter)other).artifactIds;
+		return artifactIds == null ? otherArtifactIds == null : artifactIds.equals(otherArtifactIds);
+	}
+
+	@Override
+	public int hashCode() {
+		return artifactIds == null ? 0 : artifactIds.hashCode();
+	}
+
+	public String toString() {
+		return artifactIds == null ? WILDCARD : String.join(",", artifactIds);
+	}
+
+}
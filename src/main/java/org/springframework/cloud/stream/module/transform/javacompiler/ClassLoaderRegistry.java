@@ -0,0 +1,241 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform.javacompiler;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps track of the class loaders into which compiled code is defined. Each load of
+ * compiled classes happens in a new loader, identified by a generation number, so that when
+ * the code is no longer used the loader and its classes can be unloaded. The registry only
+ * holds the loaders weakly, it reports which generations are still live, which have been
+ * released by their user but not yet collected (and so may be leaking) and how much
+ * metaspace each used when it was defined.
+ *
+ * @author agent
+ */
+public class ClassLoaderRegistry {
+
+	private final static Logger logger = LoggerFactory.getLogger(ClassLoaderRegistry.class);
+
+	private final static String METASPACE_POOL_NAME = "Metaspace";
+
+	private final ReferenceQueue<ClassLoader> collectedLoaders = new ReferenceQueue<>();
+
+	// Generations whose loaders have not yet been collected, in the order they were registered
+	private final Map<Long, Generation> generations = new LinkedHashMap<>();
+
+	private long lastGeneration;
+
+	private long unloadedCount;
+
+	/**
+	 * @param classLoader the loader the classes were defined in
+	 * @param ccds the classes that were defined
+	 * @param metaspaceBytes the growth in metaspace whilst defining the classes, or -1 if unknown
+	 * @return the generation number for the loader
+	 */
+	public synchronized long register(ClassLoader classLoader, List<CompiledClassDefinition> ccds, long metaspaceBytes) {
+		expungeCollectedLoaders();
+		long generationNumber = ++lastGeneration;
+		int byteCount = 0;
+		for (CompiledClassDefinition ccd: ccds) {
+			byteCount += ccd.getBytes().length;
+		}
+		String name = ccds.isEmpty() ? null : ccds.get(0).getClassName();
+		Generation generation = new Generation(classLoader, collectedLoaders, generationNumber, name,
+				ccds.size(), byteCount, metaspaceBytes);
+		generations.put(generationNumber, generation);
+		logger.debug("Registered {}",generation);
+		return generationNumber;
+	}
+
+	/**
+	 * Indicate the classes in a generation are no longer in use. Once everything else referencing
+	 * them has let go the loader can be collected.
+	 * @param generationNumber the generation to release
+	 * @return true if the generation was live and had not already been released
+	 */
+	public synchronized boolean release(long generationNumber) {
+		expungeCollectedLoaders();
+		Generation generation = generations.get(generationNumber);
+		if (generation == null || generation.released) {
+			return false;
+		}
+		generation.released = true;
+		logger.debug("Released {}",generation);
+		return true;
+	}
+
+	/**
+	 * @return the number of generations whose loaders have not been collected
+	 */
+	public synchronized int getLiveLoaderCount() {
+		expungeCollectedLoaders();
+		return generations.size();
+	}
+
+	/**
+	 * @return the number of generations that have been released but whose loaders have not been collected
+	 */
+	public synchronized int getReleasedLiveLoaderCount() {
+		expungeCollectedLoaders();
+		int count = 0;
+		for (Generation generation: generations.values()) {
+			if (generation.released) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return the number of loaders that have been collected, along with their classes
+	 */
+	public synchronized long getUnloadedCount() {
+		expungeCollectedLoaders();
+		return unloadedCount;
+	}
+
+	/**
+	 * @return the total metaspace recorded for the live generations
+	 */
+	public synchronized long getLiveMetaspaceBytes() {
+		expungeCollectedLoaders();
+		long total = 0;
+		for (Generation generation: generations.values()) {
+			if (generation.metaspaceBytes > 0) {
+				total += generation.metaspaceBytes;
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * @return a snapshot of the generations whose loaders have not been collected
+	 */
+	public synchronized List<Generation> getLiveGenerations() {
+		expungeCollectedLoaders();
+		return new ArrayList<>(generations.values());
+	}
+
+	/**
+	 * @return the metaspace currently used by the JVM, or -1 if the JVM does not have a metaspace
+	 */
+	public static long getMetaspaceUsed() {
+		for (MemoryPoolMXBean memoryPool: ManagementFactory.getMemoryPoolMXBeans()) {
+			if (METASPACE_POOL_NAME.equals(memoryPool.getName())) {
+				return memoryPool.getUsage().getUsed();
+			}
+		}
+		return -1;
+	}
+
+	public String toString() {
+		return "ClassLoaderRegistry(live=" + getLiveLoaderCount() + ",releasedLive=" + getReleasedLiveLoaderCount() +
+				",unloaded=" + getUnloadedCount() + ",liveMetaspace=" + getLiveMetaspaceBytes() + "b)";
+	}
+
+	private void expungeCollectedLoaders() {
+		Reference<? extends ClassLoader> reference;
+		while ((reference = collectedLoaders.poll()) != null) {
+			Generation generation = (Generation) reference;
+			generations.remove(generation.generationNumber);
+			unloadedCount++;
+			// Unreleased generations can also be unloaded, for example the result of a compilation that was never used
+			logger.debug("Unloaded {}",generation);
+		}
+	}
+
+	/**
+	 * A loader and the details of what was defined in it.
+	 */
+	public static class Generation extends WeakReference<ClassLoader> {
+
+		private final long generationNumber;
+
+		private final String name;
+
+		private final int classCount;
+
+		private final int byteCount;
+
+		private final long metaspaceBytes;
+
+		private volatile boolean released;
+
+		Generation(ClassLoader classLoader, ReferenceQueue<ClassLoader> queue, long generationNumber, String name,
+				int classCount, int byteCount, long metaspaceBytes) {
+			super(classLoader, queue);
+			this.generationNumber = generationNumber;
+			this.name = name;
+			this.classCount = classCount;
+			this.byteCount = byteCount;
+			this.metaspaceBytes = metaspaceBytes;
+		}
+
+		public long getGenerationNumber() {
+			return generationNumber;
+		}
+
+		/**
+		 * @return the name of the first class defined in the loader
+		 */
+		public String getName() {
+			return name;
+		}
+
+		public int getClassCount() {
+			return classCount;
+		}
+
+		/**
+		 * @return the total size of the class files defined in the loader
+		 */
+		public int getByteCount() {
+			return byteCount;
+		}
+
+		/**
+		 * @return the growth in metaspace whilst the classes were defined, approximate as other
+		 * threads may be loading classes at the same time, or -1 if unknown
+		 */
+		public long getMetaspaceBytes() {
+			return metaspaceBytes;
+		}
+
+		public boolean isReleased() {
+			return released;
+		}
+
+		public String toString() {
+			return "Generation(" + generationNumber + ":" + name + ",classes=" + classCount + ",bytes=" + byteCount +
+					",metaspace=" + metaspaceBytes + "b" + (released ? ",released" : "") + ")";
+		}
+	}
+
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform.javacompiler;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.tools.JavaFileObject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An index of the classes on a classpath, organized by package. The classpath is scanned
+ * once when the index is built, after that answering which classes are in a package is a
+ * map lookup. Indexes are shared: asking for the index of the same classpath will return
+ * the existing one. An index is never rebuilt, the jars and directories on the classpath
+ * are assumed not to change for the life of the JVM. The indexed entries of a jar are read
+ * back by position from whichever mapping of it the pool holds, so replacing a jar while
+ * the JVM is running would have them read the wrong classes.
+ *
+ * @author agent
+ */
+public class ClasspathIndex {
+
+	private final static Logger logger = LoggerFactory.getLogger(ClasspathIndex.class);
+
+	private final static Map<String, ClasspathIndex> indexes = new HashMap<>();
+
+	private static int scanParallelism = Runtime.getRuntime().availableProcessors();
+
+	// Package names use slashes (e.g. a/b/c), the default package is the empty string
+	private final TreeMap<String, List<JavaFileObject>> packages = new TreeMap<>();
+
+	// Dotted names of every package containing classes plus all their ancestor packages, so
+	// that asking whether a package exists is a single hash lookup
+	private final Set<String> knownPackages = new HashSet<>();
+
+	private int size;
+
+	private ClasspathIndex(String classpath, ArtifactFilter artifactFilter) {
+		long stime = System.currentTimeMillis();
+		// The archives the indexed JavaFileObjects read from are in the shared pool
+		ClasspathScanner scanner = new ClasspathScanner(ArchivePool.getSharedPool(), getScanParallelism(), artifactFilter);
+		for (JavaFileObject jfo: scanner.scan(classpath)) {
+			String name = jfo.getName();
+			int lastSlash = name.lastIndexOf('/');
+			String packageName = lastSlash == -1 ? "" : name.substring(0, lastSlash);
+			List<JavaFileObject> entries = packages.get(packageName);
+			if (entries == null) {
+				entries = new ArrayList<>();
+				packages.put(packageName, entries);
+			}
+			entries.add(jfo);
+			size++;
+		}
+		for (String packageName: packages.keySet()) {
+			String dottedName = packageName.replace('/', '.');
+			// Stop at the first ancestor already recorded, its own ancestors will be too
+			while (knownPackages.add(dottedName) && dottedName.length() != 0) {
+				int lastDot = dottedName.lastIndexOf('.');
+				dottedName = lastDot == -1 ? "" : dottedName.substring(0, lastDot);
+			}
+		}
+		logger.debug("Indexed {} classes in {} packages in {}ms",size,packages.size(),(System.currentTimeMillis()-stime));
+	}
+
+	/**
+	 * Retrieve the index for a classpath, building it if necessary.
+	 *
+	 * @param classpath a classpath of jars/directories
+	 * @return the index for that classpath
+	 */
+	public static ClasspathIndex forClasspath(String classpath) {
+		return forClasspath(classpath, ArtifactFilter.ALL);
+	}
+
+	/**
+	 * Retrieve the index for the jars of a classpath allowed by a filter, building it if necessary.
+	 *
+	 * @param classpath a classpath of jars/directories
+	 * @param artifactFilter determines which jars are included in the index
+	 * @return the index for that classpath
+	 */
+	public static synchronized ClasspathIndex forClasspath(String classpath, ArtifactFilter artifactFilter) {
+		if (classpath == null) {
+			classpath = "";
+		}
+		String key = artifactFilter == ArtifactFilter.ALL ? classpath : classpath + '\0' + artifactFilter;
+		ClasspathIndex index = indexes.get(key);
+		if (index == null) {
+			index = new ClasspathIndex(classpath, artifactFilter);
+			indexes.put(key, index);
+		}
+		return index;
+	}
+
+	/**
+	 * Set how many threads are used to scan a classpath when an index is built. Classpath
+	 * entries, and the nested jars within them, are scanned in parallel. A value of 1 scans
+	 * on the calling thread.
+	 *
+	 * @param parallelism the number of threads to scan with
+	 */
+	public static synchronized void setScanParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Parallelism must be at least 1: "+parallelism);
+		}
+		scanParallelism = parallelism;
+	}
+
+	public static synchronized int getScanParallelism() {
+		return scanParallelism;
+	}
+
+	/**
+	 * @param packageName the package of interest in dotted form (e.g. com.example), or null for all packages
+	 * @param includeSubpackages if true, include results in subpackages of the specified package
+	 * @return the classes in the package
+	 */
+	public List<JavaFileObject> list(String packageName, boolean includeSubpackages) {
+		if (packageName == null) {
+			return list("", true);
+		}
+		if (packageName.contains(File.separator)) {
+			throw new IllegalArgumentException("Package name filters should use dots to separate components: "+packageName);
+		}
+		String key = packageName.replace('.', '/');
+		if (!includeSubpackages) {
+			List<JavaFileObject> entries = packages.get(key);
+			return entries == null ? Collections.<JavaFileObject>emptyList() : Collections.unmodifiableList(entries);
+		}
+		Iterable<List<JavaFileObject>> matchingPackages;
+		if (key.length() == 0) {
+			matchingPackages = packages.values();
+		} else {
+			// Subpackages of a/b are the keys in the range [a/b/, a/b0) as '0' follows '/'
+			List<List<JavaFileObject>> subpackages = new ArrayList<>(packages.subMap(key + '/', key + '0').values());
+			List<JavaFileObject> entries = packages.get(key);
+			if (entries != null) {
+				subpackages.add(0, entries);
+			}
+			matchingPackages = subpackages;
+		}
+		List<JavaFileObject> result = new ArrayList<>();
+		for (List<JavaFileObject> entries: matchingPackages) {
+			result.addAll(entries);
+		}
+		return result;
+	}
+
+	/**
+	 * @param packageName a package in dotted form (e.g. com.example)
+	 * @return true if the index contains classes in that package or any of its subpackages
+	 */
+	public boolean containsPackage(String packageName) {
+		return knownPackages.contains(packageName);
+	}
+
+	/**
+	 * @return the number of classes in the index
+	 */
+	public int size() {
+		return size;
+	}
+
+}
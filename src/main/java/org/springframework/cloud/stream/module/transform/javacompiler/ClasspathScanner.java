@@ -0,0 +1,355 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform.javacompiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+import javax.tools.JavaFileObject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Finds all the classes on a classpath using a fork/join pool. A task is forked for each
+ * classpath entry and, within archives, for each nested jar (the lib folder of a spring
+ * boot uberjar) so that the scanning of a single uberjar is also spread across threads.
+ * Results are joined in classpath order, which is the same order a sequential scan
+ * with {@link IterableClasspath} would produce. Jars not allowed by the {@link ArtifactFilter}
+ * are skipped on their name alone, without being opened, unless they are the spring boot jar
+ * the application was launched from.
+ *
+ * @author agent
+ */
+class ClasspathScanner {
+
+	private final static Logger logger = LoggerFactory.getLogger(ClasspathScanner.class);
+
+	private final ArchivePool archivePool;
+
+	private final int parallelism;
+
+	private final ArtifactFilter artifactFilter;
+
+	private final File bootJar;
+
+	private static File launchedBootJar;
+
+	private static boolean launchedBootJarFound;
+
+	/**
+	 * @param archivePool the pool from which to retrieve archives
+	 * @param parallelism the number of threads to scan with
+	 */
+	ClasspathScanner(ArchivePool archivePool, int parallelism) {
+		this(archivePool, parallelism, ArtifactFilter.ALL);
+	}
+
+	/**
+	 * @param archivePool the pool from which to retrieve archives
+	 * @param parallelism the number of threads to scan with
+	 * @param artifactFilter determines which jars are scanned
+	 */
+	ClasspathScanner(ArchivePool archivePool, int parallelism, ArtifactFilter artifactFilter) {
+		this(archivePool, parallelism, artifactFilter, getLaunchedBootJar());
+	}
+
+	/**
+	 * @param archivePool the pool from which to retrieve archives
+	 * @param parallelism the number of threads to scan with
+	 * @param artifactFilter determines which jars are scanned
+	 * @param bootJar the spring boot jar whose own classes are scanned whatever the filter, or null
+	 */
+	ClasspathScanner(ArchivePool archivePool, int parallelism, ArtifactFilter artifactFilter, File bootJar) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Parallelism must be at least 1: "+parallelism);
+		}
+		this.archivePool = archivePool;
+		this.parallelism = parallelism;
+		this.artifactFilter = artifactFilter;
+		this.bootJar = bootJar == null ? null : bootJar.getAbsoluteFile();
+	}
+
+	/**
+	 * @param classpath a classpath of jars/directories
+	 * @return all the classes on the classpath
+	 */
+	List<JavaFileObject> scan(String classpath) {
+		List<File> classpathEntries = new ArrayList<>();
+		StringTokenizer tokenizer = new StringTokenizer(classpath, File.pathSeparator);
+		while (tokenizer.hasMoreTokens()) {
+			File f = new File(tokenizer.nextToken());
+			if (f.exists()) {
+				classpathEntries.add(f);
+			} else {
+				logger.debug("path element does not exist {}",f);
+			}
+		}
+		if (parallelism == 1) {
+			return new ClasspathTask(classpathEntries).compute();
+		}
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			return pool.invoke(new ClasspathTask(classpathEntries));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@SuppressWarnings("serial")
+	class ClasspathTask extends RecursiveTask<List<JavaFileObject>> {
+
+		private List<File> classpathEntries;
+
+		ClasspathTask(List<File> classpathEntries) {
+			this.classpathEntries = classpathEntries;
+		}
+
+		@Override
+		protected List<JavaFileObject> compute() {
+			List<RecursiveTask<List<JavaFileObject>>> tasks = new ArrayList<>();
+			for (File classpathEntry: classpathEntries) {
+				if (classpathEntry.isDirectory()) {
+					tasks.add(new DirectoryTask(classpathEntry));
+				} else {
+					tasks.add(new ArchiveTask(classpathEntry));
+				}
+			}
+			return forkAndJoin(tasks);
+		}
+	}
+
+	@SuppressWarnings("serial")
+	class DirectoryTask extends RecursiveTask<List<JavaFileObject>> {
+
+		private File directory;
+
+		DirectoryTask(File directory) {
+			this.directory = directory;
+		}
+
+		@Override
+		protected List<JavaFileObject> compute() {
+			List<JavaFileObject> result = new ArrayList<>();
+			try (DirEnumeration dirEnumeration = new DirEnumeration(directory)) {
+				while (dirEnumeration.hasMoreElements()) {
+					File file = dirEnumeration.nextElement();
+					if (file.getName().endsWith(".class")) {
+						result.add(new DirEntryJavaFileObject(directory, file));
+					}
+				}
+			}
+			return result;
+		}
+	}
+
+	@SuppressWarnings("serial")
+	class ArchiveTask extends RecursiveTask<List<JavaFileObject>> {
+
+		private File file;
+
+		ArchiveTask(File file) {
+			this.file = file;
+		}
+
+		@Override
+		protected List<JavaFileObject> compute() {
+			MappedArchive archive;
+			try {
+				if (!artifactFilter.accept(file.getPath()) && !file.getAbsoluteFile().equals(bootJar)) {
+					logger.debug("Skipping classpath entry not allowed by the artifact filter {}",file);
+					return new ArrayList<>();
+				}
+				archive = archivePool.getArchive(file);
+			} catch (IOException ioe) {
+				logger.debug("Unexpected error whilst opening classpath entry {}",file,ioe);
+				return new ArrayList<>();
+			}
+			// Classes directly in the archive are collected into a task of their own so that
+			// they can be kept in order relative to the classes found in nested archives
+			List<RecursiveTask<List<JavaFileObject>>> tasks = new ArrayList<>();
+			List<JavaFileObject> classes = new ArrayList<>();
+			for (int entry = 0, max = archive.size(); entry < max; entry++) {
+				if (archive.entryNameEndsWith(entry, ".class")) {
+					classes.add(new ZipEntryJavaFileObject(file, archivePool, entry));
+				} else if (isNestedJar(archive, entry)) {
+					if (!artifactFilter.accept(archive.getEntryName(entry))) {
+						continue;
+					}
+					if (!classes.isEmpty()) {
+						tasks.add(new CompletedTask(classes));
+						classes = new ArrayList<>();
+					}
+					tasks.add(new NestedArchiveTask(file, archive, entry));
+				}
+			}
+			if (tasks.isEmpty()) {
+				return classes;
+			}
+			if (!classes.isEmpty()) {
+				tasks.add(new CompletedTask(classes));
+			}
+			return forkAndJoin(tasks);
+		}
+	}
+
+	@SuppressWarnings("serial")
+	class NestedArchiveTask extends RecursiveTask<List<JavaFileObject>> {
+
+		private File outerFile;
+
+		private MappedArchive outerArchive;
+
+		private int entry;
+
+		NestedArchiveTask(File outerFile, MappedArchive outerArchive, int entry) {
+			this.outerFile = outerFile;
+			this.outerArchive = outerArchive;
+			this.entry = entry;
+		}
+
+		@Override
+		protected List<JavaFileObject> compute() {
+			List<JavaFileObject> result = new ArrayList<>();
+			NestedArchive nestedArchive = new NestedArchive(archivePool, outerFile, outerArchive, entry);
+			try {
+				MappedArchive archive = nestedArchive.getArchive();
+				for (int nestedEntry = 0, max = archive.size(); nestedEntry < max; nestedEntry++) {
+					if (archive.entryNameEndsWith(nestedEntry, ".class")) {
+						result.add(new NestedZipEntryJavaFileObject(nestedArchive, nestedEntry));
+					}
+				}
+			} catch (IOException ioe) {
+				logger.debug("Unexpected error whilst opening nested archive {}",nestedArchive.getName(),ioe);
+			}
+			return result;
+		}
+	}
+
+	@SuppressWarnings("serial")
+	static class CompletedTask extends RecursiveTask<List<JavaFileObject>> {
+
+		private List<JavaFileObject> result;
+
+		CompletedTask(List<JavaFileObject> result) {
+			this.result = result;
+		}
+
+		@Override
+		protected List<JavaFileObject> compute() {
+			return result;
+		}
+	}
+
+	private static boolean isNestedJar(MappedArchive archive, int entry) {
+		return archive.entryNameStartsWith(entry, "lib/") && archive.entryNameEndsWith(entry, ".jar");
+	}
+
+	/**
+	 * A spring boot jar contains the application, it is always scanned although the jars
+	 * nested within it are filtered. It is found once: it is the jar this class was loaded
+	 * from when running nested in a spring boot jar, otherwise the jar launched with
+	 * <tt>java -jar</tt> if its manifest names a Start-Class.
+	 *
+	 * @return the spring boot jar the application was launched from, or null if there isn't one
+	 */
+	static synchronized File getLaunchedBootJar() {
+		if (!launchedBootJarFound) {
+			CodeSource codeSource = ClasspathScanner.class.getProtectionDomain().getCodeSource();
+			launchedBootJar = codeSource == null ? null : getOuterJar(codeSource.getLocation());
+			if (launchedBootJar == null) {
+				launchedBootJar = getStartClassJar(System.getProperty("sun.java.command"));
+			}
+			launchedBootJarFound = true;
+			logger.debug("Spring boot jar: {}",launchedBootJar);
+		}
+		return launchedBootJar;
+	}
+
+	/**
+	 * @param location a code source location, e.g. <tt>jar:file:/app.jar!/lib/foo.jar!/</tt>
+	 * @return the outermost jar of a location within a jar, or null if the location is not within a jar
+	 */
+	static File getOuterJar(URL location) {
+		if (location == null || !location.getProtocol().equals("jar")) {
+			return null;
+		}
+		String path = location.getPath();
+		int separator = path.indexOf("!/");
+		try {
+			return new File(new URL(separator == -1 ? path : path.substring(0, separator)).toURI());
+		} catch (IOException | URISyntaxException | IllegalArgumentException e) {
+			logger.debug("Unable to determine the jar containing {}",location,e);
+			return null;
+		}
+	}
+
+	private static File getStartClassJar(String command) {
+		if (command == null) {
+			return null;
+		}
+		int space = command.indexOf(' ');
+		File file = new File(space == -1 ? command : command.substring(0, space));
+		if (!file.getName().endsWith(".jar") || !file.isFile()) {
+			return null;
+		}
+		try (JarFile jarFile = new JarFile(file)) {
+			Manifest manifest = jarFile.getManifest();
+			if (manifest != null && manifest.getMainAttributes().getValue("Start-Class") != null) {
+				return file;
+			}
+		} catch (IOException ioe) {
+			logger.debug("Unable to read the manifest of {}",file,ioe);
+		}
+		return null;
+	}
+
+	/**
+	 * Run the tasks, in parallel if running in a fork/join pool, and concatenate their results
+	 * in the order the tasks were supplied.
+	 */
+	private static List<JavaFileObject> forkAndJoin(List<RecursiveTask<List<JavaFileObject>>> tasks) {
+		List<JavaFileObject> result = new ArrayList<>();
+		if (!ForkJoinTask.inForkJoinPool()) {
+			for (RecursiveTask<List<JavaFileObject>> task: tasks) {
+				result.addAll(task.invoke());
+			}
+			return result;
+		}
+		for (int i = tasks.size() - 1; i > 0; i--) {
+			tasks.get(i).fork();
+		}
+		if (!tasks.isEmpty()) {
+			result.addAll(tasks.get(0).invoke());
+		}
+		for (int i = 1; i < tasks.size(); i++) {
+			result.addAll(tasks.get(i).join());
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform.javacompiler;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.tools.StandardLocation;
+
+/**
+ * Counters and timers for the phases of compilation: listing packages on the platform
+ * classpath and classpath, reading class files from archives, running the compiler and
+ * defining the classes produced. Timers record a count, total time and maximum time, the
+ * same shape as a Micrometer timer. All values are cumulative and, like
+ * {@link CompilationStatistics}, shared by every compiler instance in the JVM.
+ *
+ * @author agent
+ */
+public class CompilationMetrics {
+
+	private final Timer compileTimer = new Timer();
+
+	private final Timer defineTimer = new Timer();
+
+	private final LongAdder failedCompilations = new LongAdder();
+
+	private final LongAdder platformClasspathLists = new LongAdder();
+
+	private final LongAdder platformClasspathListedFiles = new LongAdder();
+
+	private final LongAdder classpathLists = new LongAdder();
+
+	private final LongAdder classpathListedFiles = new LongAdder();
+
+	private final LongAdder classesDefined = new LongAdder();
+
+	private final LongAdder classBytesDefined = new LongAdder();
+
+	/**
+	 * @param success whether the compilation succeeded
+	 * @param elapsedNanos how long the compiler ran for
+	 * @param fileManager the file manager used for the compilation, its package listings are recorded
+	 */
+	public void recordCompilation(boolean success, long elapsedNanos, MemoryBasedJavaFileManager fileManager) {
+		compileTimer.record(elapsedNanos);
+		if (!success) {
+			failedCompilations.increment();
+		}
+		platformClasspathLists.add(fileManager.getListCount(StandardLocation.PLATFORM_CLASS_PATH));
+		platformClasspathListedFiles.add(fileManager.getListedFileCount(StandardLocation.PLATFORM_CLASS_PATH));
+		classpathLists.add(fileManager.getListCount(StandardLocation.CLASS_PATH));
+		classpathListedFiles.add(fileManager.getListedFileCount(StandardLocation.CLASS_PATH));
+	}
+
+	/**
+	 * @param ccds the class definitions that were defined
+	 * @param elapsedNanos how long defining them took
+	 */
+	public void recordDefinition(List<CompiledClassDefinition> ccds, long elapsedNanos) {
+		defineTimer.record(elapsedNanos);
+		classesDefined.add(ccds.size());
+		for (CompiledClassDefinition ccd: ccds) {
+			classBytesDefined.add(ccd.getBytes().length);
+		}
+	}
+
+	/**
+	 * @return the timer for running the compiler
+	 */
+	public Timer getCompileTimer() {
+		return compileTimer;
+	}
+
+	/**
+	 * @return the timer for defining compiled classes in a new class loader
+	 */
+	public Timer getDefineTimer() {
+		return defineTimer;
+	}
+
+	/**
+	 * @return the current value of every meter, keyed by a dotted name (for example
+	 * <tt>compiler.compile.count</tt>), times are in milliseconds
+	 */
+	public Map<String, Number> getMeters() {
+		Map<String, Number> meters = new LinkedHashMap<>();
+		compileTimer.addTo(meters, "compiler.compile");
+		meters.put("compiler.compile.failed", failedCompilations.sum());
+		meters.put("compiler.list.platformClasspath.count", platformClasspathLists.sum());
+		meters.put("compiler.list.platformClasspath.files", platformClasspathListedFiles.sum());
+		meters.put("compiler.list.classpath.count", classpathLists.sum());
+		meters.put("compiler.list.classpath.files", classpathListedFiles.sum());
+		meters.put("compiler.archive.bytesRead", MappedArchive.getBytesRead());
+		defineTimer.addTo(meters, "compiler.define");
+		meters.put("compiler.define.classes", classesDefined.sum());
+		meters.put("compiler.define.bytes", classBytesDefined.sum());
+		return meters;
+	}
+
+	public String toString() {
+		return "CompilationMetrics" + getMeters();
+	}
+
+	/**
+	 * Records how many times something happened, how long it took in total and the longest it took.
+	 */
+	public static class Timer {
+
+		private final LongAdder count = new LongAdder();
+
+		private final LongAdder totalNanos = new LongAdder();
+
+		private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+		void record(long elapsedNanos) {
+			count.increment();
+			totalNanos.add(elapsedNanos);
+			maxNanos.accumulate(elapsedNanos);
+		}
+
+		public long getCount() {
+			return count.sum();
+		}
+
+		public long getTotalTime(TimeUnit unit) {
+			return unit.convert(totalNanos.sum(), TimeUnit.NANOSECONDS);
+		}
+
+		public long getMax(TimeUnit unit) {
+			return unit.convert(maxNanos.get(), TimeUnit.NANOSECONDS);
+		}
+
+		private void addTo(Map<String, Number> meters, String name) {
+			meters.put(name + ".count", getCount());
+			meters.put(name + ".totalTime", getTotalTime(TimeUnit.MILLISECONDS));
+			meters.put(name + ".max", getMax(TimeUnit.MILLISECONDS));
+		}
+	}
+
+}
@@ -36,6 +36,11 @@ public class CompilationResult {
 
 	List<Class<?>> compiledClasses = new ArrayList<>();
 
+	List<CompiledClassDefinition> compiledClassDefinitions = new ArrayList<>();
+
+	// Identifies the loader the compiled classes were defined in, see ClassLoaderRegistry
+	private long classLoaderGeneration;
+
 	public CompilationResult(boolean successfulCompilation) {
 		this.successfulCompilation = successfulCompilation;
 	}
@@ -59,6 +64,28 @@ public class CompilationResult {
 	public void setCompiledClasses(List<Class<?>> compiledClasses) {
 		this.compiledClasses = compiledClasses;
 	}
+
+	/**
+	 * @return the class definitions (names and bytes) from which the compiled classes were loaded
+	 */
+	public List<CompiledClassDefinition> getCompiledClassDefinitions() {
+		return compiledClassDefinitions;
+	}
+
+	public void setCompiledClassDefinitions(List<CompiledClassDefinition> compiledClassDefinitions) {
+		this.compiledClassDefinitions = compiledClassDefinitions;
+	}
+
+	/**
+	 * @return the generation of the class loader the compiled classes were defined in, 0 if none were defined
+	 */
+	public long getClassLoaderGeneration() {
+		return classLoaderGeneration;
+	}
+
+	public void setClassLoaderGeneration(long classLoaderGeneration) {
+		this.classLoaderGeneration = classLoaderGeneration;
+	}
 	
 	public String toString() {
 		StringBuilder s = new StringBuilder();
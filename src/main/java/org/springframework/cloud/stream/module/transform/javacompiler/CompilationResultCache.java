@@ -0,0 +1,162 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform.javacompiler;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in memory cache of compilation results keyed by class name and source code. Both
+ * successful and failed results are cached, so repeatedly compiling broken code is also
+ * fast. The cache is bounded: the least recently used entry is evicted when the maximum
+ * size is reached and entries older than the maximum age are discarded when encountered.
+ *
+ * @author agent
+ */
+public class CompilationResultCache {
+
+	public final static int DEFAULT_MAXIMUM_SIZE = 32;
+
+	public final static long DEFAULT_MAXIMUM_AGE_MILLIS = 60 * 60 * 1000;
+
+	private final int maximumSize;
+
+	private final long maximumAgeMillis;
+
+	// Access ordered so that iteration starts with the least recently used entry
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	public CompilationResultCache() {
+		this(DEFAULT_MAXIMUM_SIZE, DEFAULT_MAXIMUM_AGE_MILLIS);
+	}
+
+	/**
+	 * @param maximumSize the maximum number of results to hold
+	 * @param maximumAgeMillis how long a result may be served from the cache after it was added
+	 */
+	public CompilationResultCache(int maximumSize, long maximumAgeMillis) {
+		if (maximumSize < 1) {
+			throw new IllegalArgumentException("Maximum size must be at least 1: "+maximumSize);
+		}
+		this.maximumSize = maximumSize;
+		this.maximumAgeMillis = maximumAgeMillis;
+	}
+
+	/**
+	 * @param className the name of the class (dotted form, e.g. com.foo.bar.Goo)
+	 * @param classSourceCode the full source code for the class
+	 * @return the cached result of compiling that source, or null if there is not one
+	 */
+	public synchronized CompilationResult get(String className, String classSourceCode) {
+		String key = getKey(className, classSourceCode);
+		Entry entry = entries.get(key);
+		if (entry != null && isExpired(entry, System.currentTimeMillis())) {
+			entries.remove(key);
+			evictions.incrementAndGet();
+			entry = null;
+		}
+		if (entry == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return entry.compilationResult;
+	}
+
+	public synchronized void put(String className, String classSourceCode, CompilationResult compilationResult) {
+		long now = System.currentTimeMillis();
+		entries.put(getKey(className, classSourceCode), new Entry(compilationResult, now));
+		Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<String, Entry> next = iterator.next();
+			if (entries.size() > maximumSize || isExpired(next.getValue(), now)) {
+				iterator.remove();
+				evictions.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Discard any entries for a result, for example because the classes it loaded are no longer in use.
+	 * @param compilationResult the result to discard
+	 * @return true if an entry was discarded
+	 */
+	public synchronized boolean remove(CompilationResult compilationResult) {
+		boolean removed = false;
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().compilationResult == compilationResult) {
+				iterator.remove();
+				removed = true;
+			}
+		}
+		return removed;
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	public String toString() {
+		return "CompilationResultCache(size=" + size() + ",hits=" + getHitCount() + ",misses=" + getMissCount() +
+				",evictions=" + getEvictionCount() + ")";
+	}
+
+	private boolean isExpired(Entry entry, long now) {
+		return (now - entry.created) > maximumAgeMillis;
+	}
+
+	private static String getKey(String className, String classSourceCode) {
+		return className + '\0' + classSourceCode;
+	}
+
+	private static class Entry {
+
+		final CompilationResult compilationResult;
+
+		final long created;
+
+		Entry(CompilationResult compilationResult, long created) {
+			this.compilationResult = compilationResult;
+			this.created = created;
+		}
+	}
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform.javacompiler;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how long compilations take, per compiler backend. The first compilation with a
+ * backend pays for loading and JIT compiling the compiler itself (and for indexing the
+ * classpath) so it is recorded separately as the cold compile time, later compilations are
+ * warm. A warm up compilation at startup means the first user compilation is warm.
+ *
+ * @author agent
+ */
+public class CompilationStatistics {
+
+	private final Map<String, BackendStatistics> backends = new LinkedHashMap<>();
+
+	/**
+	 * @param backendName the name of the backend that performed the compilation
+	 * @param elapsedNanos how long the compilation took
+	 * @return true if this was the first (cold) compilation with that backend
+	 */
+	public synchronized boolean recordCompilation(String backendName, long elapsedNanos) {
+		BackendStatistics statistics = backends.get(backendName);
+		if (statistics == null) {
+			statistics = new BackendStatistics();
+			statistics.coldNanos = elapsedNanos;
+			backends.put(backendName, statistics);
+			return true;
+		}
+		statistics.warmCount++;
+		statistics.warmTotalNanos += elapsedNanos;
+		statistics.warmMinNanos = Math.min(statistics.warmMinNanos, elapsedNanos);
+		statistics.warmMaxNanos = Math.max(statistics.warmMaxNanos, elapsedNanos);
+		return false;
+	}
+
+	/**
+	 * @param backendName the name of a backend
+	 * @return how long the first compilation with that backend took, or -1 if there has not been one
+	 */
+	public synchronized long getColdCompileNanos(String backendName) {
+		BackendStatistics statistics = backends.get(backendName);
+		return statistics == null ? -1 : statistics.coldNanos;
+	}
+
+	/**
+	 * @param backendName the name of a backend
+	 * @return how many compilations with that backend have happened after the first one
+	 */
+	public synchronized long getWarmCompileCount(String backendName) {
+		BackendStatistics statistics = backends.get(backendName);
+		return statistics == null ? 0 : statistics.warmCount;
+	}
+
+	/**
+	 * @param backendName the name of a backend
+	 * @return the mean time taken by warm compilations with that backend, or -1 if there have not been any
+	 */
+	public synchronized long getMeanWarmCompileNanos(String backendName) {
+		BackendStatistics statistics = backends.get(backendName);
+		return (statistics == null || statistics.warmCount == 0) ? -1 : statistics.warmTotalNanos / statistics.warmCount;
+	}
+
+	public synchronized void clear() {
+		backends.clear();
+	}
+
+	public synchronized String toString() {
+		StringBuilder s = new StringBuilder("CompilationStatistics(");
+		boolean first = true;
+		for (Map.Entry<String, BackendStatistics> entry: backends.entrySet()) {
+			if (!first) {
+				s.append(",");
+			}
+			first = false;
+			BackendStatistics statistics = entry.getValue();
+			s.append(entry.getKey()).append(":cold=").append(millis(statistics.coldNanos)).append("ms");
+			s.append(",warm=").append(statistics.warmCount);
+			if (statistics.warmCount != 0) {
+				s.append("[mean=").append(millis(statistics.warmTotalNanos / statistics.warmCount)).append("ms");
+				s.append(",min=").append(millis(statistics.warmMinNanos)).append("ms");
+				s.append(",max=").append(millis(statistics.warmMaxNanos)).append("ms]");
+			}
+		}
+		return s.append(")").toString();
+	}
+
+	private static long millis(long nanos) {
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+
+	private static class BackendStatistics {
+		long coldNanos;
+		long warmCount;
+		long warmTotalNanos;
+		long warmMinNanos = Long.MAX_VALUE;
+		long warmMaxNanos;
+	}
+
+}
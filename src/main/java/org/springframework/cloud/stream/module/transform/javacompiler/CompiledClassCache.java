@@ -0,0 +1,220 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform.javacompiler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A persistent store for the class definitions produced by compilation. Entries are keyed
+ * by a hash of the source code, the JDK in use and a fingerprint of the classpath that
+ * the code was compiled against. This means an unchanged snippet can be loaded straight
+ * from disk after a restart, skipping the compiler entirely.
+ *
+ * @author agent
+ */
+public class CompiledClassCache {
+
+	private final static Logger logger = LoggerFactory.getLogger(CompiledClassCache.class);
+
+	// Identifies (and versions) the format of the files written by this cache
+	private final static int MAGIC = 0x52784343;
+
+	final static String SUFFIX = ".ccd";
+
+	private File directory;
+
+	private String environmentFingerprint;
+
+	/**
+	 * @param directory the directory in which to keep cache entries, created if necessary
+	 */
+	public CompiledClassCache(File directory) {
+		this.directory = directory;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Compute the key under which the result of compiling the specified source would be stored.
+	 *
+	 * @param className the name of the class (dotted form, e.g. com.foo.bar.Goo)
+	 * @param classSourceCode the full source code for the class
+	 * @return a key suitable for use with {@link #get(String)} and {@link #put(String, List)}
+	 */
+	public String getKey(String className, String classSourceCode) {
+		return hash(className + '\0' + classSourceCode + '\0' + getEnvironmentFingerprint());
+	}
+
+	/**
+	 * @param key the key for the cache entry
+	 * @return the cached class definitions, or null if there is no usable entry for the key
+	 */
+	public List<CompiledClassDefinition> get(String key) {
+		File entry = new File(directory, key + SUFFIX);
+		if (!entry.isFile()) {
+			return null;
+		}
+		try (InputStream is = new FileInputStream(entry)) {
+			List<CompiledClassDefinition> ccds = read(is);
+			if (ccds == null) {
+				logger.debug("Ignoring cache entry {} with unexpected format",entry);
+			}
+			return ccds;
+		} catch (IOException ioe) {
+			logger.debug("Unable to read cache entry {}",entry,ioe);
+			return null;
+		}
+	}
+
+	/**
+	 * Store class definitions in the cache. Failure to write the entry is not fatal, the
+	 * result will simply be recomputed next time.
+	 *
+	 * @param key the key for the cache entry
+	 * @param ccds the class definitions to store
+	 */
+	public void put(String key, List<CompiledClassDefinition> ccds) {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			logger.debug("Unable to create cache directory {}",directory);
+			return;
+		}
+		File entry = new File(directory, key + SUFFIX);
+		File tmp = null;
+		try {
+			// Write to a temporary file then move it into place so readers never see a partial entry
+			tmp = File.createTempFile(key, null, directory);
+			try (OutputStream os = new FileOutputStream(tmp)) {
+				write(os, ccds);
+			}
+			try {
+				Files.move(tmp.toPath(), entry.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException amnse) {
+				Files.move(tmp.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException ioe) {
+			logger.debug("Unable to write cache entry {}",entry,ioe);
+			if (tmp != null) {
+				tmp.delete();
+			}
+		}
+	}
+
+	/**
+	 * Read class definitions in the format written by {@link #write(OutputStream, List)}.
+	 *
+	 * @param is the stream to read from, not closed by this method
+	 * @return the class definitions, or null if the data is not in the expected format
+	 * @throws IOException if there is a problem reading the stream
+	 */
+	static List<CompiledClassDefinition> read(InputStream is) throws IOException {
+		DataInputStream dis = new DataInputStream(new BufferedInputStream(is));
+		if (dis.readInt() != MAGIC) {
+			return null;
+		}
+		int count = dis.readInt();
+		List<CompiledClassDefinition> ccds = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			String name = dis.readUTF();
+			byte[] bytes = new byte[dis.readInt()];
+			dis.readFully(bytes);
+			ccds.add(new CompiledClassDefinition(name, bytes));
+		}
+		return ccds;
+	}
+
+	/**
+	 * @param os the stream to write to, flushed but not closed by this method
+	 * @param ccds the class definitions to write
+	 * @throws IOException if there is a problem writing to the stream
+	 */
+	static void write(OutputStream os, List<CompiledClassDefinition> ccds) throws IOException {
+		DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(os));
+		dos.writeInt(MAGIC);
+		dos.writeInt(ccds.size());
+		for (CompiledClassDefinition ccd: ccds) {
+			dos.writeUTF(ccd.getName());
+			dos.writeInt(ccd.getBytes().length);
+			dos.write(ccd.getBytes());
+		}
+		dos.flush();
+	}
+
+	/**
+	 * The environment fingerprint covers the JDK and the classpath. Classpath entries contribute
+	 * their size and modification time so that a redeployment with different libraries
+	 * does not pick up stale bytecode.
+	 */
+	private synchronized String getEnvironmentFingerprint() {
+		if (environmentFingerprint == null) {
+			StringBuilder s = new StringBuilder();
+			s.append(System.getProperty("java.vendor")).append(':');
+			s.append(System.getProperty("java.version")).append(':');
+			s.append(System.getProperty("java.vm.version")).append('\n');
+			appendClasspathFingerprint(s, System.getProperty("sun.boot.class.path"));
+			appendClasspathFingerprint(s, System.getProperty("java.class.path"));
+			environmentFingerprint = hash(s.toString());
+		}
+		return environmentFingerprint;
+	}
+
+	private static void appendClasspathFingerprint(StringBuilder s, String classpath) {
+		if (classpath == null) {
+			return;
+		}
+		StringTokenizer tokenizer = new StringTokenizer(classpath, File.pathSeparator);
+		while (tokenizer.hasMoreTokens()) {
+			File f = new File(tokenizer.nextToken());
+			s.append(f.getAbsolutePath()).append(':').append(f.length()).append(':').append(f.lastModified()).append('\n');
+		}
+	}
+
+	static String hash(String input) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(input.getBytes(StandardCharsets.UTF_8));
+			StringBuilder s = new StringBuilder(digest.length * 2);
+			for (byte b: digest) {
+				s.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			}
+			return s.toString();
+		} catch (NoSuchAlgorithmException nsae) {
+			throw new IllegalStateException("SHA-256 should always be available", nsae);
+		}
+	}
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform.javacompiler;
+
+import java.util.List;
+
+import javax.tools.JavaFileObject;
+
+/**
+ * A compiler that {@link RuntimeJavaCompiler} can delegate to. Implementations resolve
+ * types through the supplied {@link MemoryBasedJavaFileManager} (so they see the same
+ * classpath, including nested jars) and write the class files they produce to it.
+ *
+ * @author agent
+ */
+public interface CompilerBackend {
+
+	/**
+	 * @return a short name for the backend, e.g. javac
+	 */
+	String getName();
+
+	/**
+	 * Compile a source file. Any class files produced are written to the file manager and any
+	 * errors/warnings produced are added to the supplied list of messages.
+	 *
+	 * @param sourceFile the source to compile
+	 * @param fileManager the file manager for the compilation
+	 * @param compilationMessages the list to add messages to
+	 * @return true if the compilation was successful
+	 */
+	boolean compile(JavaFileObject sourceFile, MemoryBasedJavaFileManager fileManager,
+			List<CompilationMessage> compilationMessages);
+
+}
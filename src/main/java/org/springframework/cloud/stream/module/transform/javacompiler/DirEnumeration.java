@@ -15,45 +15,90 @@
  */
 package org.springframework.cloud.stream.module.transform.javacompiler;
 
+import java.io.Closeable;
 import java.io.File;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Enumeration;
-import java.util.List;
+import java.util.Iterator;
 import java.util.NoSuchElementException;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
- * Walks a directory hierarchy from some base directory discovering files.
+ * Walks a directory hierarchy from some base directory discovering files. The walk is
+ * depth first and streams its results, only the directories on the path to the current
+ * position are open at any time. If a package is specified the walk starts at the directory
+ * for that package and optionally does not descend into subpackages, so that the rest of the
+ * hierarchy is never visited. A directory stream is closed when the walk leaves it,
+ * an enumeration abandoned part way through should be closed.
  * 
  * @author Andy Clement
  */
-public class DirEnumeration implements Enumeration<File> {
+public class DirEnumeration implements Enumeration<File>, Closeable {
 	
-//	private final static Logger logger = LoggerFactory.getLogger(DirEnumeration.class);
+	private final static Logger logger = LoggerFactory.getLogger(DirEnumeration.class);
 	
 	// The starting point
 	private File basedir; 
-	
-	// Candidates collected so far
-	private List<File> filesToReturn; 
 
-	// Places still to explore for candidates
-	private List<File> directoriesToExplore; 
+	// Where the walk begins, the base directory or a package directory below it
+	private Path startdir;
+
+	private boolean includeSubdirectories;
+
+	// The directories currently open, the one being read from is at the top
+	private Deque<DirectoryStream<Path>> openStreams;
+
+	private Deque<Iterator<Path>> openIterators;
+
+	private File nextFile;
 
 	public DirEnumeration(File basedir) {
+		this(basedir, null, true);
+	}
+
+	/**
+	 * @param basedir the base directory, names are computed relative to this
+	 * @param packageName an optional package in dotted form (e.g. com.example), only files
+	 * in the directory for that package will be returned
+	 * @param includeSubpackages if true, also return files in subdirectories of the package directory
+	 */
+	public DirEnumeration(File basedir, String packageName, boolean includeSubpackages) {
 		this.basedir = basedir;
+		this.includeSubdirectories = includeSubpackages;
+		if (packageName == null || packageName.length() == 0) {
+			this.startdir = basedir.toPath();
+		} else {
+			this.startdir = new File(basedir, packageName.replace('.', File.separatorChar)).toPath();
+		}
 	}
 
 	private void computeValue() {
-		if (filesToReturn == null) { // Indicates we haven't started yet
-			filesToReturn = new ArrayList<>();
-			directoriesToExplore = new ArrayList<>();
-			visitDirectory(basedir);
+		if (openIterators == null) { // Indicates we haven't started yet
+			openStreams = new ArrayDeque<>();
+			openIterators = new ArrayDeque<>();
+			visitDirectory(startdir);
 		}
-		if (filesToReturn.size() == 0) {
-			while (filesToReturn.size() == 0 && directoriesToExplore.size() != 0) {
-				File nextDir = directoriesToExplore.get(0);
-				directoriesToExplore.remove(0);
-				visitDirectory(nextDir);
+		while (nextFile == null && !openIterators.isEmpty()) {
+			Iterator<Path> iterator = openIterators.peek();
+			if (!iterator.hasNext()) {
+				openIterators.pop();
+				closeQuietly(openStreams.pop());
+				continue;
+			}
+			Path path = iterator.next();
+			if (Files.isDirectory(path)) {
+				if (includeSubdirectories) {
+					visitDirectory(path);
+				}
+			} else {
+				nextFile = path.toFile();
 			}
 		}
 	}
@@ -61,32 +106,53 @@ public class DirEnumeration implements Enumeration<File> {
 	@Override
 	public boolean hasMoreElements() {
 		computeValue();
-		return filesToReturn.size() != 0;
+		return nextFile != null;
 	}
 
 	@Override
 	public File nextElement() {
 		computeValue();
-		if (filesToReturn.size()==0) {
+		if (nextFile == null) {
 			throw new NoSuchElementException();
 		}
-		File toReturn = filesToReturn.get(0);
-		filesToReturn.remove(0);
+		File toReturn = nextFile;
+		nextFile = null;
 		return toReturn;
 	}
 
-	private void visitDirectory(File dir) {
-		File[] files = dir.listFiles();
-		if (files != null) {
-			for (File file: files) {
-				if (file.isDirectory()) {
-					directoriesToExplore.add(file);
-				} else {
-					filesToReturn.add(file);
-				}
+	private void visitDirectory(Path dir) {
+		if (!Files.isDirectory(dir)) {
+			return;
+		}
+		try {
+			DirectoryStream<Path> stream = Files.newDirectoryStream(dir);
+			openStreams.push(stream);
+			openIterators.push(stream.iterator());
+		} catch (IOException ioe) {
+			logger.debug("Unable to read directory {}",dir,ioe);
+		}
+	}
+
+	/**
+	 * Release any directories still open, only necessary if the enumeration was not exhausted.
+	 */
+	@Override
+	public void close() {
+		if (openStreams != null) {
+			while (!openStreams.isEmpty()) {
+				closeQuietly(openStreams.pop());
 			}
+			openIterators.clear();
+		}
+		nextFile = null;
+	}
+
+	private static void closeQuietly(DirectoryStream<Path> stream) {
+		try {
+			stream.close();
+		} catch (IOException ioe) {
+			logger.debug("Unexpected problem closing directory stream",ioe);
 		}
-//		logger.debug("after visiting {} filesToReturn=#{} dirsToExplore=#{}",dir,filesToReturn.size(), directoriesToExplore.size());
 	}
 
 	public File getDirectory() {
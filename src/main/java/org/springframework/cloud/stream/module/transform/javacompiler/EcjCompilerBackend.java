@@ -0,0 +1,234 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform.javacompiler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.tools.JavaFileManager.Location;
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import javax.tools.StandardLocation;
+
+import org.eclipse.jdt.core.compiler.CategorizedProblem;
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.eclipse.jdt.internal.compiler.ClassFile;
+import org.eclipse.jdt.internal.compiler.Compiler;
+import org.eclipse.jdt.internal.compiler.DefaultErrorHandlingPolicies;
+import org.eclipse.jdt.internal.compiler.ICompilerRequestor;
+import org.eclipse.jdt.internal.compiler.batch.CompilationUnit;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFormatException;
+import org.eclipse.jdt.internal.compiler.env.ICompilationUnit;
+import org.eclipse.jdt.internal.compiler.env.INameEnvironment;
+import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
+import org.eclipse.jdt.internal.compiler.impl.CompilerOptions;
+import org.eclipse.jdt.internal.compiler.problem.DefaultProblemFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiles using the Eclipse Compiler for Java (ECJ). This does not need a JDK. The
+ * ECJ implementation of the javax.tools API does not consult the file manager when
+ * looking for types (it builds its own classpath from the system properties and so would
+ * not see the nested jars in an uberjar) so this backend drives the ECJ compiler directly,
+ * answering its type lookups from the file manager.
+ *
+ * @author agent
+ */
+public class EcjCompilerBackend implements CompilerBackend {
+
+	private static Logger logger = LoggerFactory.getLogger(EcjCompilerBackend.class);
+
+	public final static String NAME = "ecj";
+
+	private final static Location[] SEARCH_LOCATIONS = new Location[] {
+			StandardLocation.PLATFORM_CLASS_PATH, StandardLocation.CLASS_PATH };
+
+	// Parsed platform classes. These cannot change whilst the JVM is running so are shared by
+	// all compilations, saving each compilation reparsing java.lang.Object and friends. ECJ
+	// creates fresh bindings from these for each compilation and does not modify them.
+	private final static Map<JavaFileObject, ClassFileReader> platformClasses = new ConcurrentHashMap<>();
+
+	private final CompilerOptions compilerOptions;
+
+	public EcjCompilerBackend() {
+		Map<String, String> settings = new HashMap<>();
+		settings.put(CompilerOptions.OPTION_Source, CompilerOptions.VERSION_1_8);
+		settings.put(CompilerOptions.OPTION_Compliance, CompilerOptions.VERSION_1_8);
+		settings.put(CompilerOptions.OPTION_TargetPlatform, CompilerOptions.VERSION_1_8);
+		settings.put(CompilerOptions.OPTION_LineNumberAttribute, CompilerOptions.GENERATE);
+		settings.put(CompilerOptions.OPTION_SourceFileAttribute, CompilerOptions.GENERATE);
+		settings.put(CompilerOptions.OPTION_LocalVariableAttribute, CompilerOptions.GENERATE);
+		settings.put(CompilerOptions.OPTION_Process_Annotations, CompilerOptions.DISABLED);
+		compilerOptions = new CompilerOptions(settings);
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public boolean compile(final JavaFileObject sourceFile, final MemoryBasedJavaFileManager fileManager,
+			final List<CompilationMessage> compilationMessages) {
+		final String sourceCode;
+		try {
+			sourceCode = sourceFile.getCharContent(true).toString();
+		} catch (IOException ioe) {
+			throw new IllegalStateException("Unable to retrieve source for "+sourceFile.getName(), ioe);
+		}
+		// ECJ determines the main type name from the file name
+		String fileName = sourceFile.getName();
+		if (fileName.startsWith("/")) {
+			fileName = fileName.substring(1);
+		}
+		ICompilationUnit compilationUnit = new CompilationUnit(sourceCode.toCharArray(), fileName, null);
+		final boolean[] success = new boolean[] { true };
+		ICompilerRequestor requestor = new ICompilerRequestor() {
+			@Override
+			public void acceptResult(org.eclipse.jdt.internal.compiler.CompilationResult result) {
+				if (result.getProblems() != null) {
+					for (CategorizedProblem problem: result.getProblems()) {
+						CompilationMessage.Kind kind = problem.isError()?CompilationMessage.Kind.ERROR:CompilationMessage.Kind.OTHER;
+						// ECJ source end positions are inclusive
+						compilationMessages.add(new CompilationMessage(kind,problem.getMessage(),sourceCode,problem.getSourceStart(),problem.getSourceEnd()+1));
+					}
+				}
+				if (result.hasErrors()) {
+					success[0] = false;
+					return;
+				}
+				for (ClassFile classFile: result.getClassFiles()) {
+					String className = CharOperation.toString(classFile.getCompoundName());
+					try (OutputStream os = fileManager.getJavaFileForOutput(StandardLocation.CLASS_OUTPUT, className, Kind.CLASS, sourceFile).openOutputStream()) {
+						os.write(classFile.getBytes());
+					} catch (IOException ioe) {
+						throw new IllegalStateException("Unable to write class file for "+className, ioe);
+					}
+				}
+			}
+		};
+		Compiler compiler = new Compiler(new FileManagerNameEnvironment(fileManager),
+				DefaultErrorHandlingPolicies.proceedWithAllProblems(), compilerOptions, requestor,
+				new DefaultProblemFactory(Locale.getDefault()));
+		compiler.compile(new ICompilationUnit[] { compilationUnit });
+		return success[0];
+	}
+
+	public String toString() {
+		return "EcjCompilerBackend()";
+	}
+
+	/**
+	 * Answers ECJ type and package lookups using a file manager. The contents of each package
+	 * are listed at most once per compilation.
+	 */
+	static class FileManagerNameEnvironment implements INameEnvironment {
+
+		private final MemoryBasedJavaFileManager fileManager;
+
+		// Package name (dotted) to the classes in that package, keyed by binary name
+		private final Map<String, Map<String, JavaFileObject>> packages = new HashMap<>();
+
+		// Those classes from the package lists that are on the platform classpath
+		private final Set<JavaFileObject> platformClassFiles = new HashSet<>();
+
+		FileManagerNameEnvironment(MemoryBasedJavaFileManager fileManager) {
+			this.fileManager = fileManager;
+		}
+
+		@Override
+		public NameEnvironmentAnswer findType(char[][] compoundTypeName) {
+			if (compoundTypeName == null || compoundTypeName.length == 0) {
+				return null;
+			}
+			char[][] packageName = CharOperation.subarray(compoundTypeName, 0, compoundTypeName.length - 1);
+			return findType(compoundTypeName[compoundTypeName.length - 1], packageName);
+		}
+
+		@Override
+		public NameEnvironmentAnswer findType(char[] typeName, char[][] packageName) {
+			String packageNameString = CharOperation.toString(packageName);
+			String binaryName = packageNameString.length() == 0 ? new String(typeName) : packageNameString + "." + new String(typeName);
+			JavaFileObject jfo = getPackageContents(packageNameString).get(binaryName);
+			if (jfo == null) {
+				return null;
+			}
+			boolean isPlatformClass = platformClassFiles.contains(jfo);
+			ClassFileReader classFileReader = isPlatformClass ? platformClasses.get(jfo) : null;
+			if (classFileReader == null) {
+				try (InputStream is = jfo.openInputStream()) {
+					classFileReader = ClassFileReader.read(is, jfo.getName(), true);
+				} catch (IOException | ClassFormatException e) {
+					logger.debug("Unable to read class {} from {}",binaryName,jfo.toUri(),e);
+					return null;
+				}
+				if (isPlatformClass) {
+					platformClasses.put(jfo, classFileReader);
+				}
+			}
+			return new NameEnvironmentAnswer(classFileReader, null);
+		}
+
+		@Override
+		public boolean isPackage(char[][] parentPackageName, char[] packageName) {
+			String parent = CharOperation.toString(parentPackageName);
+			return fileManager.isPackage(parent.length() == 0 ? new String(packageName) : parent + "." + new String(packageName));
+		}
+
+		@Override
+		public void cleanup() {
+			packages.clear();
+			platformClassFiles.clear();
+		}
+
+		private Map<String, JavaFileObject> getPackageContents(String packageName) {
+			Map<String, JavaFileObject> contents = packages.get(packageName);
+			if (contents == null) {
+				contents = new HashMap<>();
+				for (Location location: SEARCH_LOCATIONS) {
+					try {
+						for (JavaFileObject jfo: fileManager.list(location, packageName, EnumSet.of(Kind.CLASS), false)) {
+							String binaryName = fileManager.inferBinaryName(location, jfo);
+							// Earlier locations take precedence
+							if (!contents.containsKey(binaryName)) {
+								contents.put(binaryName, jfo);
+								if (location == StandardLocation.PLATFORM_CLASS_PATH) {
+									platformClassFiles.add(jfo);
+								}
+							}
+						}
+					} catch (IOException ioe) {
+						logger.debug("Unable to list package {} in {}",packageName,location,ioe);
+					}
+				}
+				packages.put(packageName, contents);
+			}
+			return contents;
+		}
+	}
+
+}
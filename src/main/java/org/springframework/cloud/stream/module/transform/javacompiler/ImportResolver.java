@@ -0,0 +1,328 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform.javacompiler;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replaces on-demand imports (<tt>import java.util.*</tt>, <tt>import static a.b.C.*</tt>) with
+ * single-type and single-static imports of just the types and members that some code
+ * references. When compiling code with on-demand imports the compiler has to consider every
+ * imported package for each simple name it resolves, with single imports it goes straight to
+ * the class. The contents of packages are taken from the classpath indexes.
+ * <p>
+ * The resolution follows the language rules: names that are types in <tt>java.lang</tt> or in the
+ * package of the code being compiled, or are the simple names of single-type imports, are not
+ * affected by on-demand imports so are not imported. If a name would be ambiguous the
+ * imports are returned unchanged, so that the compiler reports the problem as it would have done.
+ * An on-demand import of a class (<tt>import java.util.Map.*</tt>) imports its member types, an
+ * on-demand import that names neither a package nor a class is left as it is.
+ * <p>
+ * Comments and string and character literals are removed from the code before looking for
+ * the names it refers to, so that words in them are not imported.
+ *
+ * @author agent
+ */
+public class ImportResolver {
+
+	private final static Logger logger = LoggerFactory.getLogger(ImportResolver.class);
+
+	private final static Pattern IDENTIFIER = Pattern.compile("[\\p{javaJavaIdentifierStart}][\\p{javaJavaIdentifierPart}]*");
+
+	private final static String STATIC_PREFIX = "static ";
+
+	private final static String ON_DEMAND_SUFFIX = ".*";
+
+	private final ClassLoader classLoader;
+
+	private final List<ClasspathIndex> indexes;
+
+	// Dotted package name to the simple names of the top level types in that package
+	private final Map<String, Set<String>> packageTypes = new ConcurrentHashMap<>();
+
+	// Dotted class name to the names of its public static members, including member types
+	private final Map<String, Set<String>> staticMembers = new ConcurrentHashMap<>();
+
+	// Dotted class name to the simple names of its public member types
+	private final Map<String, Set<String>> memberTypes = new ConcurrentHashMap<>();
+
+	// Recorded as the member types of names that are not classes
+	private final static Set<String> NOT_A_CLASS = Collections.unmodifiableSet(new HashSet<String>());
+
+	/**
+	 * Create a resolver for the classpath the {@link RuntimeJavaCompiler} compiles against.
+	 * @param classLoader the loader used to check the accessibility of types and find static members
+	 */
+	public ImportResolver(ClassLoader classLoader) {
+		this(classLoader, ArtifactFilter.ALL);
+	}
+
+	/**
+	 * Create a resolver for the classpath the {@link RuntimeJavaCompiler} compiles against.
+	 * @param classLoader the loader used to check the accessibility of types and find static members
+	 * @param artifactFilter the jars on the classpath that are compiled against
+	 */
+	public ImportResolver(ClassLoader classLoader, ArtifactFilter artifactFilter) {
+		this(classLoader, ClasspathIndex.forClasspath(System.getProperty("sun.boot.class.path")),
+				ClasspathIndex.forClasspath(System.getProperty("java.class.path"), artifactFilter));
+	}
+
+	ImportResolver(ClassLoader classLoader, ClasspathIndex... indexes) {
+		this.classLoader = classLoader;
+		this.indexes = Arrays.asList(indexes);
+	}
+
+	/**
+	 * @param imports the imports as they would appear in source without the <tt>import</tt> keyword
+	 * or semicolon (e.g. <tt>java.util.*</tt>, <tt>static a.b.C.*</tt>, <tt>a.b.C</tt>)
+	 * @param packageName the package of the code being compiled
+	 * @param code the code whose references should be imported, any identifiers within it are candidates
+	 * @return imports without any on-demand imports, in the same form
+	 */
+	public List<String> resolve(List<String> imports, String packageName, String code) {
+		Set<String> result = new LinkedHashSet<>();
+		List<String> onDemandPackages = new ArrayList<>();
+		List<String> onDemandClasses = new ArrayList<>();
+		List<String> onDemandStaticClasses = new ArrayList<>();
+		Set<String> unaffectedNames = new HashSet<>();
+		for (String importString: imports) {
+			boolean isStatic = importString.startsWith(STATIC_PREFIX);
+			String name = isStatic ? importString.substring(STATIC_PREFIX.length()).trim() : importString;
+			if (name.endsWith(ON_DEMAND_SUFFIX)) {
+				name = name.substring(0, name.length() - ON_DEMAND_SUFFIX.length());
+				if (isStatic) {
+					onDemandStaticClasses.add(name);
+				} else if (!getPackageTypes(name).isEmpty()) {
+					onDemandPackages.add(name);
+				} else if (getMemberTypes(name) != NOT_A_CLASS) {
+					onDemandClasses.add(name);
+				} else {
+					logger.debug("{} is neither a package nor a class, leaving the import unchanged",name);
+					result.add(importString);
+				}
+			} else {
+				result.add(importString);
+				if (!isStatic) {
+					unaffectedNames.add(name.substring(name.lastIndexOf('.') + 1));
+				}
+			}
+		}
+		unaffectedNames.addAll(getPackageTypes("java.lang"));
+		unaffectedNames.addAll(getPackageTypes(packageName));
+		for (String identifier: getIdentifiers(code)) {
+			if (!unaffectedNames.contains(identifier)) {
+				String importedType = null;
+				for (String onDemandPackage: onDemandPackages) {
+					if (getPackageTypes(onDemandPackage).contains(identifier) && isPublic(onDemandPackage + '.' + identifier)) {
+						if (importedType != null) {
+							logger.debug("{} is ambiguous ({}, {}), leaving the imports unchanged",identifier,importedType,onDemandPackage);
+							return imports;
+						}
+						importedType = onDemandPackage + '.' + identifier;
+					}
+				}
+				for (String onDemandClass: onDemandClasses) {
+					if (getMemberTypes(onDemandClass).contains(identifier)) {
+						if (importedType != null) {
+							logger.debug("{} is ambiguous ({}, {}), leaving the imports unchanged",identifier,importedType,onDemandClass);
+							return imports;
+						}
+						importedType = onDemandClass + '.' + identifier;
+					}
+				}
+				if (importedType != null) {
+					result.add(importedType);
+				}
+			}
+			for (String onDemandStaticClass: onDemandStaticClasses) {
+				if (getStaticMembers(onDemandStaticClass).contains(identifier)) {
+					result.add(STATIC_PREFIX + onDemandStaticClass + '.' + identifier);
+				}
+			}
+		}
+		logger.debug("Resolved imports {} to {}",imports,result);
+		return new ArrayList<>(result);
+	}
+
+	private static Set<String> getIdentifiers(String code) {
+		Set<String> identifiers = new TreeSet<>();
+		Matcher matcher = IDENTIFIER.matcher(stripCommentsAndLiterals(code));
+		while (matcher.find()) {
+			identifiers.add(matcher.group());
+		}
+		return identifiers;
+	}
+
+	/**
+	 * Replace comments and string and character literals with spaces, leaving the code that
+	 * can refer to types and members.
+	 */
+	static String stripCommentsAndLiterals(String code) {
+		StringBuilder s = new StringBuilder(code.length());
+		int length = code.length();
+		int i = 0;
+		while (i < length) {
+			char ch = code.charAt(i);
+			int end;
+			if (ch == '/' && i + 1 < length && code.charAt(i + 1) == '/') {
+				end = code.indexOf('\n', i);
+				end = end == -1 ? length : end;
+			} else if (ch == '/' && i + 1 < length && code.charAt(i + 1) == '*') {
+				end = code.indexOf("*/", i + 2);
+				end = end == -1 ? length : end + 2;
+			} else if (ch == '"' || ch == '\'') {
+				end = i + 1;
+				while (end < length && code.charAt(end) != ch) {
+					end += code.charAt(end) == '\\' ? 2 : 1;
+				}
+				end = Math.min(end + 1, length);
+			} else {
+				s.append(ch);
+				i++;
+				continue;
+			}
+			s.append(' ');
+			i = end;
+		}
+		return s.toString();
+	}
+
+	private Set<String> getPackageTypes(String packageName) {
+		Set<String> types = packageTypes.get(packageName);
+		if (types == null) {
+			types = new HashSet<>();
+			for (ClasspathIndex index: indexes) {
+				for (JavaFileObject jfo: index.list(packageName, false)) {
+					String name = jfo.getName();
+					String simpleName = name.substring(name.lastIndexOf('/') + 1, name.length() - Kind.CLASS.extension.length());
+					if (simpleName.indexOf('$') == -1) {
+						types.add(simpleName);
+					}
+				}
+			}
+			packageTypes.put(packageName, types);
+		}
+		return types;
+	}
+
+	/**
+	 * @return the simple names of the public member types of the class, or {@link #NOT_A_CLASS}
+	 */
+	private Set<String> getMemberTypes(String className) {
+		Set<String> types = memberTypes.get(className);
+		if (types == null) {
+			Class<?> clazz = loadClass(className);
+			if (clazz == null) {
+				types = NOT_A_CLASS;
+			} else {
+				types = new HashSet<>();
+				try {
+					for (Class<?> memberType: clazz.getClasses()) {
+						types.add(memberType.getSimpleName());
+					}
+				} catch (LinkageError e) {
+					logger.debug("Unable to find member types of {}",className,e);
+				}
+			}
+			memberTypes.put(className, types);
+		}
+		return types;
+	}
+
+	/**
+	 * @param className a dotted class name, member types separated from their enclosing type by a dot
+	 * @return the class or null if there is no such class
+	 */
+	private Class<?> loadClass(String className) {
+		String binaryName = className;
+		while (true) {
+			try {
+				return Class.forName(binaryName, false, classLoader);
+			} catch (ClassNotFoundException | LinkageError e) {
+				int lastDot = binaryName.lastIndexOf('.');
+				if (lastDot == -1) {
+					logger.debug("Unable to load {}",className,e);
+					return null;
+				}
+				// Perhaps a member type, e.g. java.util.Map.Entry is java.util.Map$Entry
+				binaryName = binaryName.substring(0, lastDot) + '$' + binaryName.substring(lastDot + 1);
+			}
+		}
+	}
+
+	private Set<String> getStaticMembers(String className) {
+		Set<String> members = staticMembers.get(className);
+		if (members == null) {
+			members = new HashSet<>();
+			try {
+				Class<?> clazz = loadClass(className);
+				if (clazz == null) {
+					throw new ClassNotFoundException(className);
+				}
+				for (Class<?> memberType: clazz.getClasses()) {
+					if (Modifier.isStatic(memberType.getModifiers())) {
+						members.add(memberType.getSimpleName());
+					}
+				}
+				for (Method method: clazz.getMethods()) {
+					if (Modifier.isStatic(method.getModifiers())) {
+						members.add(method.getName());
+					}
+				}
+				for (Field field: clazz.getFields()) {
+					if (Modifier.isStatic(field.getModifiers())) {
+						members.add(field.getName());
+					}
+				}
+			} catch (ClassNotFoundException | LinkageError e) {
+				logger.debug("Unable to find static members of {}",className,e);
+				members = Collections.emptySet();
+			}
+			staticMembers.put(className, members);
+		}
+		return members;
+	}
+
+	private boolean isPublic(String className) {
+		try {
+			return Modifier.isPublic(Class.forName(className, false, classLoader).getModifiers());
+		} catch (ClassNotFoundException | LinkageError e) {
+			logger.debug("Unable to load {}",className,e);
+			return false;
+		}
+	}
+
+}
@@ -18,15 +18,12 @@ package org.springframework.cloud.stream.module.transform.javacompiler;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.Stack;
 import java.util.StringTokenizer;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
-import java.util.zip.ZipInputStream;
 
 import javax.tools.JavaFileObject;
 
@@ -46,8 +43,23 @@ public class IterableClasspath extends CloseableFilterableJavaFileObjectIterable
 	private static Logger logger = LoggerFactory.getLogger(IterableClasspath.class);
 	
 	private List<File> classpathEntries = new ArrayList<>();
+
+	// Directories are only walked from the directory for this package
+	private String packageNameFilter;
+
+	private boolean includeSubpackages;
 	
-	private List<ZipFile> openArchives = new ArrayList<>();
+	// Archives are mapped once and shared by all iterators
+	private ArchivePool archivePool;
+
+	// True if the pool was created for (and so should be cleared by) this iterable
+	private boolean privatePool;
+
+	// Keyed by outer archive path and nested archive name
+	private Map<String, NestedArchive> nestedArchives = new HashMap<>();
+
+	// Directory walks hold open directory streams until they are exhausted or closed
+	private List<DirEnumeration> directoryEnumerations = new ArrayList<>();
 
 	/**
 	 * @param classpath a classpath of jars/directories
@@ -55,7 +67,21 @@ public class IterableClasspath extends CloseableFilterableJavaFileObjectIterable
 	 * @param includeSubpackages if true, include results in subpackages of the specified package filter
 	 */
 	IterableClasspath(String classpath, String packageNameFilter, boolean includeSubpackages) {
+		this(classpath, packageNameFilter, includeSubpackages, new ArchivePool(Integer.MAX_VALUE));
+		this.privatePool = true;
+	}
+
+	/**
+	 * @param classpath a classpath of jars/directories
+	 * @param packageNameFilter an optional package name if choosing to filter (e.g. com.example)
+	 * @param includeSubpackages if true, include results in subpackages of the specified package filter
+	 * @param archivePool the pool from which to retrieve archives
+	 */
+	IterableClasspath(String classpath, String packageNameFilter, boolean includeSubpackages, ArchivePool archivePool) {
 		super(packageNameFilter, includeSubpackages);
+		this.packageNameFilter = packageNameFilter;
+		this.includeSubpackages = includeSubpackages;
+		this.archivePool = archivePool;
 		StringTokenizer tokenizer = new StringTokenizer(classpath, File.pathSeparator);
 		while (tokenizer.hasMoreElements()) {
 			String nextEntry = tokenizer.nextToken();
@@ -69,20 +95,41 @@ public class IterableClasspath extends CloseableFilterableJavaFileObjectIterable
 	}
 
 	public void close() {
-		for (ZipFile openArchive : openArchives) {
-			try {
-				openArchive.close();
-			} catch (IOException ioe) {
-				logger.debug("Unexpected error closing archive {}",openArchive,ioe);
+		// Mapped archives hold no file handles, the mappings are released when no longer referenced
+		if (privatePool) {
+			archivePool.clear();
+		}
+		nestedArchives.clear();
+		synchronized (directoryEnumerations) {
+			for (DirEnumeration directoryEnumeration: directoryEnumerations) {
+				directoryEnumeration.close();
 			}
+			directoryEnumerations.clear();
+		}
+	}
+
+	private synchronized NestedArchive getNestedArchive(File outerFile, MappedArchive outerArchive, int entry) {
+		String key = outerFile.getAbsolutePath() + "!" + outerArchive.getEntryName(entry);
+		NestedArchive nestedArchive = nestedArchives.get(key);
+		if (nestedArchive == null) {
+			nestedArchive = new NestedArchive(archivePool, outerFile, outerArchive, entry);
+			nestedArchives.put(key, nestedArchive);
 		}
-		openArchives.clear();
+		return nestedArchive;
 	}
 
 	public Iterator<JavaFileObject> iterator() {
 		return new ClasspathEntriesIterator();
 	}
 
+	/**
+	 * Check the entry against the criteria. Names are only created for class files, so that
+	 * resources and directories in the archive cost nothing.
+	 */
+	private boolean accept(MappedArchive archive, int entry) {
+		return archive.entryNameEndsWith(entry, ".class") && accept(archive.getEntryName(entry));
+	}
+
 	class ClasspathEntriesIterator implements Iterator<JavaFileObject> {
 		private int currentClasspathEntriesIndex = 0;
 
@@ -90,76 +137,89 @@ public class IterableClasspath extends CloseableFilterableJavaFileObjectIterable
 		private File openDirectory = null;
 		private DirEnumeration openDirectoryEnumeration = null;
 
-		private ZipFile openArchive = null;
+		private MappedArchive openArchive = null;
 		private File openFile = null;
-		private ZipEntry nestedZip = null;
-		private Stack<Enumeration<? extends ZipEntry>> openArchiveEnumeration = null;
+		private int openArchiveEntry = 0;
+
+		// Set whilst processing a nested archive within the open archive
+		private NestedArchive nestedArchive = null;
+		private MappedArchive nestedMappedArchive = null;
+		private int nestedArchiveEntry = 0;
 
 		private JavaFileObject nextEntry = null;
 
 		private void findNext() {
 			if (nextEntry == null) {
-				try {
-					while (openArchive!=null || openDirectory!=null || currentClasspathEntriesIndex < classpathEntries.size()) {
-						if (openArchive == null && openDirectory == null) {
-							// Open the next item
-							File nextFile = classpathEntries.get(currentClasspathEntriesIndex);
-							if (nextFile.isDirectory()) {
-								openDirectory = nextFile;
-								openDirectoryEnumeration = new DirEnumeration(nextFile);
-							} else {
+				while (openArchive!=null || openDirectory!=null || currentClasspathEntriesIndex < classpathEntries.size()) {
+					if (openArchive == null && openDirectory == null) {
+						// Open the next item
+						File nextFile = classpathEntries.get(currentClasspathEntriesIndex++);
+						if (nextFile.isDirectory()) {
+							openDirectory = nextFile;
+							openDirectoryEnumeration = new DirEnumeration(nextFile, packageNameFilter, packageNameFilter == null || includeSubpackages);
+							synchronized (directoryEnumerations) {
+								directoryEnumerations.add(openDirectoryEnumeration);
+							}
+						} else {
+							try {
+								openArchive = archivePool.getArchive(nextFile);
 								openFile = nextFile;
-								openArchive = new ZipFile(nextFile);
-								openArchives.add(openArchive);
-								openArchiveEnumeration = new Stack<Enumeration<? extends ZipEntry>>();
-								openArchiveEnumeration.push(openArchive.entries());
+								openArchiveEntry = 0;
+							} catch (IOException ioe) {
+								logger.debug("Unexpected error whilst opening classpath entry {}",nextFile,ioe);
+								continue;
 							}
-							currentClasspathEntriesIndex++;
 						}
-						if (openArchiveEnumeration != null) {
-							while (!openArchiveEnumeration.isEmpty()) {
-								while (openArchiveEnumeration.peek().hasMoreElements()) {
-									ZipEntry entry = openArchiveEnumeration.peek().nextElement();
-									String entryName = entry.getName();
-									if (accept(entryName)) {
-										if (nestedZip!=null) {
-											nextEntry = new NestedZipEntryJavaFileObject(openFile, openArchive,nestedZip, entry);										
-										} else {
-											nextEntry = new ZipEntryJavaFileObject(openFile, openArchive, entry);
-										}
-										return;
-									} else if (nestedZip == null && entryName.startsWith("lib/") && entryName.endsWith(".jar")) {
-										// nested jar in uber jar
-										logger.debug("opening nested archive {}",entry.getName());
-										ZipInputStream zis = new ZipInputStream(openArchive.getInputStream(entry));
-	//									nextEntry = new NestedZipEntryJavaFileObject(openArchive.firstElement(),openArchive.peek(),entry);
-										Enumeration<? extends ZipEntry> nestedZipEnumerator = new ZipEnumerator(zis);
-										nestedZip = entry;
-										openArchiveEnumeration.push(nestedZipEnumerator);
-									}
+					}
+					if (openArchive != null) {
+						if (nestedArchive != null) {
+							while (nestedArchiveEntry < nestedMappedArchive.size()) {
+								int entry = nestedArchiveEntry++;
+								if (accept(nestedMappedArchive, entry)) {
+									nextEntry = new NestedZipEntryJavaFileObject(nestedArchive, entry);
+									return;
+								}
+							}
+							nestedArchive = null;
+							nestedMappedArchive = null;
+						}
+						while (openArchiveEntry < openArchive.size()) {
+							int entry = openArchiveEntry++;
+							if (accept(openArchive, entry)) {
+								nextEntry = new ZipEntryJavaFileObject(openFile, archivePool, entry);
+								return;
+							} else if (openArchive.entryNameStartsWith(entry, "lib/") && openArchive.entryNameEndsWith(entry, ".jar")) {
+								// nested jar in uber jar
+								try {
+									nestedMappedArchive = archivePool.getNestedArchive(openFile, entry);
+									nestedArchive = getNestedArchive(openFile, openArchive, entry);
+									nestedArchiveEntry = 0;
+									logger.debug("opened nested archive {}",nestedArchive.getName());
+									break;
+								} catch (IOException ioe) {
+									logger.debug("Unexpected error whilst opening nested archive {}",openArchive.getEntryName(entry),ioe);
 								}
-								openArchiveEnumeration.pop();
-								if (nestedZip ==null) { openArchive = null; openFile = null; }
-								else nestedZip = null;
 							}
-							openArchiveEnumeration = null;
+						}
+						if (nestedArchive == null) {
 							openArchive = null;
 							openFile = null;
-						} else if (openDirectoryEnumeration != null) {
-							while (openDirectoryEnumeration.hasMoreElements()) {
-								File entry = openDirectoryEnumeration.nextElement();
-								String name = openDirectoryEnumeration.getName(entry);
-								if (accept(name)) {
-									nextEntry = new DirEntryJavaFileObject(openDirectoryEnumeration.getDirectory(), entry);
-									return;
-								}
+						}
+					} else if (openDirectoryEnumeration != null) {
+						while (openDirectoryEnumeration.hasMoreElements()) {
+							File entry = openDirectoryEnumeration.nextElement();
+							String name = openDirectoryEnumeration.getName(entry);
+							if (accept(name)) {
+								nextEntry = new DirEntryJavaFileObject(openDirectoryEnumeration.getDirectory(), entry);
+								return;
 							}
-							openDirectoryEnumeration = null;
-							openDirectory = null;
 						}
+						synchronized (directoryEnumerations) {
+							directoryEnumerations.remove(openDirectoryEnumeration);
+						}
+						openDirectoryEnumeration = null;
+						openDirectory = null;
 					}
-				} catch (IOException ioe) {
-					logger.debug("Unexpected error whilst processing classpath entries",ioe);
 				}
 			}
 		}
@@ -181,31 +241,4 @@ public class IterableClasspath extends CloseableFilterableJavaFileObjectIterable
 
 	}
 
-	static class ZipEnumerator implements Enumeration<ZipEntry>{
-
-		private ZipInputStream zis;
-		private ZipEntry nextEntry = null;
-
-		public ZipEnumerator(ZipInputStream zis) {
-			this.zis = zis;
-		}
-
-		@Override
-		public boolean hasMoreElements() {
-			try {
-				nextEntry = zis.getNextEntry();
-			} catch (IOException ioe) {
-				nextEntry=null;
-			}
-			return nextEntry!=null;
-		}
-
-		@Override
-		public ZipEntry nextElement() {
-			ZipEntry retval = nextEntry;
-			nextEntry = null;
-			return retval;
-		}
-		
-	}
 }
\ No newline at end of file
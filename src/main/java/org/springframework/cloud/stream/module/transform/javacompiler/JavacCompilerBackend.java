@@ -0,0 +1,95 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform.javacompiler;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.Diagnostic;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.JavaFileObject;
+import javax.tools.ToolProvider;
+
+/**
+ * Compiles using the JDK provided Java Compiler. This requires running on a JDK (or
+ * having tools.jar on the classpath).
+ *
+ * @author agent
+ */
+public class JavacCompilerBackend implements CompilerBackend {
+
+	public final static String NAME = "javac";
+
+	private JavaCompiler compiler;
+
+	public JavacCompilerBackend() {
+		compiler = ToolProvider.getSystemJavaCompiler();
+		if (compiler == null) {
+			throw new IllegalStateException("No system Java compiler available, running on a JRE?");
+		}
+	}
+
+	/**
+	 * @return true if the JDK provided Java Compiler is available
+	 */
+	public static boolean isAvailable() {
+		return ToolProvider.getSystemJavaCompiler() != null;
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public boolean compile(JavaFileObject sourceFile, MemoryBasedJavaFileManager fileManager,
+			List<CompilationMessage> compilationMessages) {
+		DiagnosticCollector<JavaFileObject> diagnosticCollector = new DiagnosticCollector<JavaFileObject>();
+		Iterable<? extends JavaFileObject> compilationUnits = Arrays.asList(sourceFile);
+		CompilationTask task = compiler.getTask(null, fileManager , diagnosticCollector, null, null, compilationUnits);
+
+		boolean success = task.call();
+
+		// If successful there may be no errors but there might be info/warnings
+		for (Diagnostic<? extends JavaFileObject> diagnostic : diagnosticCollector.getDiagnostics()) {
+			CompilationMessage.Kind kind = (diagnostic.getKind()==Kind.ERROR?CompilationMessage.Kind.ERROR:CompilationMessage.Kind.OTHER);
+			String sourceCode = null;
+			// Some diagnostics (e.g. about options) are not associated with a source file
+			if (diagnostic.getSource() != null) {
+				try {
+					sourceCode = (String)diagnostic.getSource().getCharContent(true);
+				} catch (IOException ioe) {
+					// Unexpected, but leave sourceCode null to indicate it was not retrievable
+				}
+			}
+			int startPosition = (int)diagnostic.getPosition();
+			if (startPosition == Diagnostic.NOPOS) {
+				startPosition = (int)diagnostic.getStartPosition();
+			}
+			compilationMessages.add(new CompilationMessage(kind,diagnostic.getMessage(null),sourceCode,startPosition,(int)diagnostic.getEndPosition()));
+		}
+		return success;
+	}
+
+	public String toString() {
+		return "JavacCompilerBackend(compiler=" + compiler.getClass().getName() + ")";
+	}
+
+}
@@ -0,0 +1,537 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform.javacompiler;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * A read only view of a zip/jar archive that memory maps the file and parses the central
+ * directory into primitive arrays, rather than creating a <tt>ZipEntry</tt> per entry.
+ * Entry names are only turned into strings when asked for. The content of stored
+ * (uncompressed) entries is served directly from the mapped buffer, deflated entries are
+ * inflated as they are read. A mapped archive can also be created over a region of another
+ * archive, which is how jars nested inside a spring boot uberjar are accessed without
+ * extracting them.
+ *
+ * @author agent
+ */
+public class MappedArchive {
+
+	private final static int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	private final static int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	private final static int END_SIGNATURE = 0x06054b50;
+	private final static int ZIP64_END_SIGNATURE = 0x06064b50;
+	private final static int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+
+	private final static int END_HEADER_SIZE = 22;
+	private final static int ZIP64_LOCATOR_SIZE = 20;
+	private final static int ZIP64_END_SIZE = 56;
+	private final static int CENTRAL_HEADER_SIZE = 46;
+	private final static int LOCAL_HEADER_SIZE = 30;
+	private final static int MAX_COMMENT_LENGTH = 0xffff;
+
+	private final static int STORED = 0;
+	private final static int DEFLATED = 8;
+
+	// The uncompressed size of the entries read from any archive
+	private final static LongAdder bytesRead = new LongAdder();
+
+	private final String name;
+
+	// Little endian view over the whole archive
+	private final ByteBuffer buffer;
+
+	private final int size;
+
+	// Per entry data, indexed by entry number
+	private final int[] nameOffsets;
+	private final int[] nameLengths;
+	private final int[] nameHashes;
+	private final int[] localHeaderOffsets;
+	private final int[] compressedSizes;
+	private final int[] uncompressedSizes;
+	private final int[] dosTimes;
+	private final byte[] methods;
+
+	// Open addressing hash table of entry number + 1, 0 meaning an empty slot
+	private final int[] hashTable;
+
+	private MappedArchive(String name, ByteBuffer buffer) throws IOException {
+		this.name = name;
+		this.buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		int end = findEndOfCentralDirectory();
+		long entryCount = u16(end + 10);
+		long centralDirectorySize = u32(end + 12);
+		long centralDirectoryOffset = u32(end + 16);
+		int centralDirectoryEnd = end;
+		if (entryCount == 0xffff || centralDirectorySize == 0xffffffffL || centralDirectoryOffset == 0xffffffffL) {
+			int locator = end - ZIP64_LOCATOR_SIZE;
+			if (locator < 0 || this.buffer.getInt(locator) != ZIP64_LOCATOR_SIGNATURE) {
+				throw new ZipException("Missing zip64 end of central directory locator in " + name);
+			}
+			int zip64End = findZip64End(locator, checkedOffset(this.buffer.getLong(locator + 8)));
+			entryCount = this.buffer.getLong(zip64End + 32);
+			centralDirectorySize = this.buffer.getLong(zip64End + 40);
+			centralDirectoryOffset = this.buffer.getLong(zip64End + 48);
+			centralDirectoryEnd = zip64End;
+		}
+		// Any data prepended to the zip (e.g. a launch script) shifts all the recorded offsets
+		int base = checkedOffset(centralDirectoryEnd - centralDirectorySize - centralDirectoryOffset);
+		int size = checkedOffset(entryCount);
+		this.size = size;
+		this.nameOffsets = new int[size];
+		this.nameLengths = new int[size];
+		this.nameHashes = new int[size];
+		this.localHeaderOffsets = new int[size];
+		this.compressedSizes = new int[size];
+		this.uncompressedSizes = new int[size];
+		this.dosTimes = new int[size];
+		this.methods = new byte[size];
+		this.hashTable = new int[tableSize(size)];
+		int pos = checkedOffset(base + centralDirectoryOffset);
+		for (int i = 0; i < size; i++) {
+			if (this.buffer.getInt(pos) != CENTRAL_HEADER_SIGNATURE) {
+				throw new ZipException("Invalid central directory header at " + pos + " in " + name);
+			}
+			int nameLength = u16(pos + 28);
+			int extraLength = u16(pos + 30);
+			int commentLength = u16(pos + 32);
+			long compressedSize = u32(pos + 20);
+			long uncompressedSize = u32(pos + 24);
+			long localHeaderOffset = u32(pos + 42);
+			if (compressedSize == 0xffffffffL || uncompressedSize == 0xffffffffL || localHeaderOffset == 0xffffffffL) {
+				// The real values are in the zip64 extra field, in this order, but only if the
+				// corresponding central header value is the 0xffffffff marker
+				int extra = pos + CENTRAL_HEADER_SIZE + nameLength;
+				int extraEnd = extra + extraLength;
+				while (extra + 4 <= extraEnd) {
+					int id = u16(extra);
+					int length = u16(extra + 2);
+					if (id == 0x0001) {
+						int value = extra + 4;
+						if (uncompressedSize == 0xffffffffL) {
+							uncompressedSize = this.buffer.getLong(value);
+							value += 8;
+						}
+						if (compressedSize == 0xffffffffL) {
+							compressedSize = this.buffer.getLong(value);
+							value += 8;
+						}
+						if (localHeaderOffset == 0xffffffffL) {
+							localHeaderOffset = this.buffer.getLong(value);
+						}
+						break;
+					}
+					extra += 4 + length;
+				}
+			}
+			methods[i] = (byte) u16(pos + 10);
+			dosTimes[i] = this.buffer.getInt(pos + 12);
+			compressedSizes[i] = checkedOffset(compressedSize);
+			uncompressedSizes[i] = checkedOffset(uncompressedSize);
+			localHeaderOffsets[i] = checkedOffset(base + localHeaderOffset);
+			nameOffsets[i] = pos + CENTRAL_HEADER_SIZE;
+			nameLengths[i] = nameLength;
+			nameHashes[i] = hashName(nameOffsets[i], nameLength);
+			int slot = nameHashes[i] & (hashTable.length - 1);
+			while (hashTable[slot] != 0) {
+				slot = (slot + 1) & (hashTable.length - 1);
+			}
+			hashTable[slot] = i + 1;
+			pos += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+		}
+	}
+
+	/**
+	 * Memory map an archive file.
+	 *
+	 * @param file the zip/jar file
+	 * @return a mapped archive for the file
+	 * @throws IOException if the file cannot be mapped or is not a valid zip
+	 */
+	public static MappedArchive open(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long length = channel.size();
+			if (length > Integer.MAX_VALUE) {
+				throw new ZipException("Archive too large to map: " + file);
+			}
+			// The mapping remains valid after the channel is closed
+			return new MappedArchive(file.getPath(), channel.map(FileChannel.MapMode.READ_ONLY, 0, length));
+		}
+	}
+
+	/**
+	 * @param name a name for the archive, used in messages
+	 * @param content the bytes of a zip/jar
+	 * @return a mapped archive over the supplied content
+	 * @throws IOException if the content is not a valid zip
+	 */
+	public static MappedArchive open(String name, ByteBuffer content) throws IOException {
+		return new MappedArchive(name, content);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the number of entries in the archive
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param entry the entry number
+	 * @return the name of the entry, for example a/b/C.class
+	 */
+	public String getEntryName(int entry) {
+		byte[] bytes = new byte[nameLengths[entry]];
+		ByteBuffer b = buffer.duplicate();
+		b.position(nameOffsets[entry]);
+		b.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Check the start of an entry name without creating a string for it.
+	 *
+	 * @param entry the entry number
+	 * @param prefix an ASCII prefix
+	 * @return true if the entry name starts with the prefix
+	 */
+	public boolean entryNameStartsWith(int entry, String prefix) {
+		int length = prefix.length();
+		if (nameLengths[entry] < length) {
+			return false;
+		}
+		int offset = nameOffsets[entry];
+		for (int i = 0; i < length; i++) {
+			if (buffer.get(offset + i) != prefix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Check the end of an entry name without creating a string for it.
+	 *
+	 * @param entry the entry number
+	 * @param suffix an ASCII suffix
+	 * @return true if the entry name ends with the suffix
+	 */
+	public boolean entryNameEndsWith(int entry, String suffix) {
+		int length = suffix.length();
+		if (nameLengths[entry] < length) {
+			return false;
+		}
+		int offset = nameOffsets[entry] + nameLengths[entry] - length;
+		for (int i = 0; i < length; i++) {
+			if (buffer.get(offset + i) != suffix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param entryName the name of an entry, for example a/b/C.class
+	 * @return the entry number or -1 if there is no such entry
+	 */
+	public int findEntry(String entryName) {
+		int hash = entryName.hashCode();
+		int slot = hash & (hashTable.length - 1);
+		while (hashTable[slot] != 0) {
+			int entry = hashTable[slot] - 1;
+			if (nameHashes[entry] == hash && getEntryName(entry).equals(entryName)) {
+				return entry;
+			}
+			slot = (slot + 1) & (hashTable.length - 1);
+		}
+		return -1;
+	}
+
+	/**
+	 * @param entry the entry number
+	 * @return the modification time of the entry in milliseconds since the epoch
+	 */
+	public long getTime(int entry) {
+		int dosTime = dosTimes[entry];
+		Calendar calendar = new GregorianCalendar(((dosTime >> 25) & 0x7f) + 1980, ((dosTime >> 21) & 0x0f) - 1,
+				(dosTime >> 16) & 0x1f, (dosTime >> 11) & 0x1f, (dosTime >> 5) & 0x3f, (dosTime << 1) & 0x3e);
+		return calendar.getTimeInMillis();
+	}
+
+	/**
+	 * @return the total uncompressed size of the entries whose content has been retrieved
+	 * from any mapped archive in this JVM
+	 */
+	public static long getBytesRead() {
+		return bytesRead.sum();
+	}
+
+	/**
+	 * @param entry the entry number
+	 * @return the uncompressed size of the entry
+	 */
+	public int getSize(int entry) {
+		return uncompressedSizes[entry];
+	}
+
+	/**
+	 * @param entry the entry number
+	 * @return a stream over the uncompressed content of the entry
+	 * @throws IOException if the entry is corrupt or uses an unsupported compression method
+	 */
+	public InputStream getInputStream(int entry) throws IOException {
+		ByteBuffer data = getRawData(entry);
+		bytesRead.add(uncompressedSizes[entry]);
+		switch (methods[entry]) {
+		case STORED:
+			return new ByteBufferInputStream(data);
+		case DEFLATED:
+			return new EntryInflaterInputStream(new ByteBufferInputStream(data), uncompressedSizes[entry]);
+		default:
+			throw new ZipException("Unsupported compression method " + methods[entry] + " for " + getEntryName(entry) + " in " + name);
+		}
+	}
+
+	/**
+	 * Retrieve the uncompressed content of an entry. For stored entries this is a view onto
+	 * the mapped archive and no copying occurs.
+	 *
+	 * @param entry the entry number
+	 * @return a read only buffer containing the content of the entry
+	 * @throws IOException if the entry is corrupt or uses an unsupported compression method
+	 */
+	public ByteBuffer getContent(int entry) throws IOException {
+		if (methods[entry] == STORED) {
+			bytesRead.add(uncompressedSizes[entry]);
+			return getRawData(entry).asReadOnlyBuffer();
+		}
+		byte[] bytes = new byte[uncompressedSizes[entry]];
+		try (InputStream is = getInputStream(entry)) {
+			int offset = 0;
+			int read;
+			while (offset < bytes.length && (read = is.read(bytes, offset, bytes.length - offset)) != -1) {
+				offset += read;
+			}
+			if (offset != bytes.length) {
+				throw new EOFException("Truncated entry " + getEntryName(entry) + " in " + name);
+			}
+		}
+		return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+	}
+
+	public String toString() {
+		return "MappedArchive(" + name + ",#entries=" + size + ")";
+	}
+
+	private ByteBuffer getRawData(int entry) throws IOException {
+		int localHeader = localHeaderOffsets[entry];
+		if (buffer.getInt(localHeader) != LOCAL_HEADER_SIGNATURE) {
+			throw new ZipException("Invalid local header for " + getEntryName(entry) + " in " + name);
+		}
+		// The local extra field length may differ from the central directory one
+		int start = localHeader + LOCAL_HEADER_SIZE + u16(localHeader + 26) + u16(localHeader + 28);
+		ByteBuffer data = buffer.duplicate();
+		data.limit(start + compressedSizes[entry]);
+		data.position(start);
+		return data.slice();
+	}
+
+	private int findEndOfCentralDirectory() throws IOException {
+		int limit = Math.max(0, buffer.limit() - END_HEADER_SIZE - MAX_COMMENT_LENGTH);
+		for (int pos = buffer.limit() - END_HEADER_SIZE; pos >= limit; pos--) {
+			if (buffer.getInt(pos) == END_SIGNATURE) {
+				return pos;
+			}
+		}
+		throw new ZipException("Unable to find end of central directory in " + name);
+	}
+
+	/**
+	 * The locator records the offset of the zip64 end of central directory record relative to
+	 * the start of the zip, which is not the start of the buffer if data has been prepended.
+	 * The record immediately precedes the locator, so search back from there (it is usually
+	 * found at once, only a record with extensible data is larger) but no further than the
+	 * recorded offset, prepended data can only move the record later.
+	 */
+	private int findZip64End(int locator, int recordedOffset) throws IOException {
+		for (int pos = locator - ZIP64_END_SIZE; pos >= recordedOffset; pos--) {
+			if (buffer.getInt(pos) == ZIP64_END_SIGNATURE && pos + 12 + buffer.getLong(pos + 4) == locator) {
+				return pos;
+			}
+		}
+		throw new ZipException("Invalid zip64 end of central directory in " + name);
+	}
+
+	/**
+	 * Compute the same hash as String.hashCode() would for the entry name, avoiding creating
+	 * the string when the name is ASCII (which is almost always the case).
+	 */
+	private int hashName(int offset, int length) {
+		int hash = 0;
+		for (int i = 0; i < length; i++) {
+			byte b = buffer.get(offset + i);
+			if (b < 0) {
+				byte[] bytes = new byte[length];
+				ByteBuffer d = buffer.duplicate();
+				d.position(offset);
+				d.get(bytes);
+				return new String(bytes, StandardCharsets.UTF_8).hashCode();
+			}
+			hash = 31 * hash + b;
+		}
+		return hash;
+	}
+
+	private int u16(int pos) {
+		return buffer.getShort(pos) & 0xffff;
+	}
+
+	private long u32(int pos) {
+		return buffer.getInt(pos) & 0xffffffffL;
+	}
+
+	private static int checkedOffset(long value) throws ZipException {
+		if (value < 0 || value > Integer.MAX_VALUE) {
+			throw new ZipException("Invalid or unsupported zip offset/size: " + value);
+		}
+		return (int) value;
+	}
+
+	private static int tableSize(int entries) {
+		int tableSize = 1;
+		while (tableSize < entries * 2) {
+			tableSize <<= 1;
+		}
+		return Math.max(tableSize, 2);
+	}
+
+	/**
+	 * Stream over a buffer, reads do not copy more than asked for.
+	 */
+	static class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? (buffer.get() & 0xff) : -1;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) {
+			if (length == 0) {
+				return 0;
+			}
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			int count = Math.min(length, buffer.remaining());
+			buffer.get(bytes, offset, count);
+			return count;
+		}
+
+		@Override
+		public long skip(long n) {
+			int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+			buffer.position(buffer.position() + count);
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+
+	/**
+	 * Inflates 'nowrap' deflated zip entry data, supplying the extra dummy byte the inflater
+	 * may need at the end of the input and releasing the inflater when closed.
+	 */
+	static class EntryInflaterInputStream extends InflaterInputStream {
+
+		private boolean eof = false;
+
+		private int remaining;
+
+		private boolean closed = false;
+
+		EntryInflaterInputStream(InputStream in, int uncompressedSize) {
+			super(in, new Inflater(true), Math.max(64, Math.min(uncompressedSize, 8192)));
+			this.remaining = uncompressedSize;
+		}
+
+		@Override
+		protected void fill() throws IOException {
+			if (eof) {
+				throw new EOFException("Unexpected end of zip entry input stream");
+			}
+			len = in.read(buf, 0, buf.length);
+			if (len == -1) {
+				buf[0] = 0;
+				len = 1;
+				eof = true;
+			}
+			inf.setInput(buf, 0, len);
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+			if (read > 0) {
+				remaining -= read;
+			}
+			return read;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return closed ? 0 : Math.max(0, remaining);
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!closed) {
+				closed = true;
+				inf.end();
+				super.close();
+			}
+		}
+	}
+
+}
@@ -16,10 +16,10 @@
 package org.springframework.cloud.stream.module.transform.javacompiler;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.tools.FileObject;
 import javax.tools.JavaFileManager;
@@ -33,7 +33,9 @@ import org.slf4j.LoggerFactory;
 /**
  * A file manager that serves source code from in memory and ensures output results are kept in memory
  * rather than being flushed out to disk. The JavaFileManager is also used as a lookup mechanism
- * for resolving types.
+ * for resolving types. A long lived file manager can be shared across compilations: each
+ * compilation uses its own file manager from {@link #forCompilation()}, collecting its own
+ * output but reusing the classpath state already resolved by the shared one.
  *
  * @author Andy Clement
  */
@@ -43,10 +45,68 @@ public class MemoryBasedJavaFileManager implements JavaFileManager {
 	
 	private CompilationOutputCollector outputCollector;
 
-	private List<CloseableFilterableJavaFileObjectIterable> toClose = new ArrayList<>();
+	// If set, this file manager is being used for one compilation and classpath state comes from the parent
+	private MemoryBasedJavaFileManager parent;
+
+	// Resolved on first use, the indexes themselves are shared across file managers
+	private volatile ClasspathIndex platformClasspathIndex;
+
+	private volatile ClasspathIndex classpathIndex;
+
+	// Only maintained on the root file manager, those used for a single compilation update their parent
+	private final AtomicLong packageListCount = new AtomicLong();
+
+	private final AtomicLong avoidedPackageListCount = new AtomicLong();
+
+	// Only maintained on a file manager used for a single compilation, indexed by locationIndex()
+	private final long[] listCounts = new long[2];
+
+	private final long[] listedFileCounts = new long[2];
+
+	// The classpath compiled against, if null the classpath of this JVM
+	private final String classpath;
+
+	// Determines which jars on the classpath are visible to the compiler
+	private final ArtifactFilter artifactFilter;
 
 	public MemoryBasedJavaFileManager() {
-		outputCollector = new CompilationOutputCollector();
+		this(ArtifactFilter.ALL);
+	}
+
+	/**
+	 * @param artifactFilter determines which jars on the classpath are visible to the compiler,
+	 * the platform classpath is always visible
+	 */
+	public MemoryBasedJavaFileManager(ArtifactFilter artifactFilter) {
+		this(null, null, artifactFilter);
+	}
+
+	/**
+	 * @param classpath the classpath to compile against rather than the classpath of this JVM,
+	 * for example a stub archive (see {@link StubArchiveGenerator})
+	 * @param artifactFilter determines which jars on that classpath are visible to the compiler
+	 */
+	public MemoryBasedJavaFileManager(String classpath, ArtifactFilter artifactFilter) {
+		this(null, classpath, artifactFilter);
+	}
+
+	private MemoryBasedJavaFileManager(MemoryBasedJavaFileManager parent, String classpath, ArtifactFilter artifactFilter) {
+		this.parent = parent;
+		this.classpath = classpath;
+		this.artifactFilter = artifactFilter;
+		this.outputCollector = new CompilationOutputCollector();
+	}
+
+	/**
+	 * Create a file manager for use in a single compilation. It will collect its own output
+	 * but share resolved classpath state with this file manager. Creating one is cheap and
+	 * this method may be called concurrently.
+	 *
+	 * @return a new file manager for a compilation
+	 */
+	public MemoryBasedJavaFileManager forCompilation() {
+		MemoryBasedJavaFileManager root = parent == null ? this : parent;
+		return new MemoryBasedJavaFileManager(root, root.classpath, root.artifactFilter);
 	}
 
 	@Override
@@ -67,17 +127,11 @@ public class MemoryBasedJavaFileManager implements JavaFileManager {
 	public Iterable<JavaFileObject> list(Location location, String packageName, Set<Kind> kinds, boolean recurse)
 			throws IOException {
 		logger.debug("list({},{},{},{})",location,packageName,kinds,recurse);
-		CloseableFilterableJavaFileObjectIterable resultIterable = null;
+		Iterable<JavaFileObject> resultIterable = null;
 		if (location == StandardLocation.PLATFORM_CLASS_PATH && (kinds==null || kinds.contains(Kind.CLASS))) {
-			String sunBootClassPath = System.getProperty("sun.boot.class.path");
-			logger.debug("Creating iterable for boot class path: {}",sunBootClassPath);
-			resultIterable = new IterableClasspath(sunBootClassPath, packageName, recurse);
-			toClose.add(resultIterable);
+			resultIterable = list(location, getPlatformClasspathIndex(), packageName, recurse);
 		} else if (location == StandardLocation.CLASS_PATH && (kinds==null || kinds.contains(Kind.CLASS))) {
-			String javaClassPath = System.getProperty("java.class.path");
-			logger.debug("Creating iterable for class path: {}",javaClassPath);
-			resultIterable = new IterableClasspath(javaClassPath, packageName, recurse);
-			toClose.add(resultIterable);
+			resultIterable = list(location, getClasspathIndex(), packageName, recurse);
 		} else if (location == StandardLocation.SOURCE_PATH) {
 			// There are no 'extra sources'
 			resultIterable = EmptyIterable.instance;
@@ -88,6 +142,95 @@ public class MemoryBasedJavaFileManager implements JavaFileManager {
 		return resultIterable;
 	}
 
+	/**
+	 * The compiler probes for many packages that do not exist (for example when resolving
+	 * the types referenced via on-demand imports, every import is checked for each simple
+	 * name), those are answered from the set of known packages without visiting the index.
+	 */
+	private Iterable<JavaFileObject> list(Location location, ClasspathIndex index, String packageName, boolean recurse) {
+		MemoryBasedJavaFileManager root = parent == null ? this : parent;
+		root.packageListCount.incrementAndGet();
+		listCounts[locationIndex(location)]++;
+		if (packageName != null && !index.containsPackage(packageName)) {
+			root.avoidedPackageListCount.incrementAndGet();
+			return EmptyIterable.instance;
+		}
+		List<JavaFileObject> files = index.list(packageName, recurse);
+		listedFileCounts[locationIndex(location)] += files.size();
+		return files;
+	}
+
+	private static int locationIndex(Location location) {
+		return location == StandardLocation.PLATFORM_CLASS_PATH ? 0 : 1;
+	}
+
+	/**
+	 * @return the number of classpath package listings requested, by any compilation using this file manager
+	 */
+	public long getPackageListCount() {
+		return (parent == null ? this : parent).packageListCount.get();
+	}
+
+	/**
+	 * @return how many of the package listings were for packages known not to exist, so no lookup was done
+	 */
+	public long getAvoidedPackageListCount() {
+		return (parent == null ? this : parent).avoidedPackageListCount.get();
+	}
+
+	/**
+	 * @param location the platform classpath or classpath
+	 * @return the number of package listings of that location requested by the compilation using
+	 * this file manager (see {@link #forCompilation()})
+	 */
+	public long getListCount(Location location) {
+		return listCounts[locationIndex(location)];
+	}
+
+	/**
+	 * @param location the platform classpath or classpath
+	 * @return the number of class files returned from package listings of that location for the
+	 * compilation using this file manager
+	 */
+	public long getListedFileCount(Location location) {
+		return listedFileCounts[locationIndex(location)];
+	}
+
+	/**
+	 * @param packageName a package in dotted form (e.g. com.example)
+	 * @return true if the platform classpath or classpath contain that package (or subpackages of it)
+	 */
+	public boolean isPackage(String packageName) {
+		return getPlatformClasspathIndex().containsPackage(packageName) ||
+				getClasspathIndex().containsPackage(packageName);
+	}
+
+	private ClasspathIndex getPlatformClasspathIndex() {
+		if (parent != null) {
+			return parent.getPlatformClasspathIndex();
+		}
+		ClasspathIndex index = platformClasspathIndex;
+		if (index == null) {
+			String sunBootClassPath = System.getProperty("sun.boot.class.path");
+			logger.debug("Retrieving index for boot class path: {}",sunBootClassPath);
+			index = platformClasspathIndex = ClasspathIndex.forClasspath(sunBootClassPath);
+		}
+		return index;
+	}
+
+	private ClasspathIndex getClasspathIndex() {
+		if (parent != null) {
+			return parent.getClasspathIndex();
+		}
+		ClasspathIndex index = classpathIndex;
+		if (index == null) {
+			String path = classpath == null ? System.getProperty("java.class.path") : classpath;
+			logger.debug("Retrieving index for class path: {} (artifacts: {})",path,artifactFilter);
+			index = classpathIndex = ClasspathIndex.forClasspath(path, artifactFilter);
+		}
+		return index;
+	}
+
 	@Override
 	public boolean hasLocation(Location location) {
 		logger.debug("hasLocation({})",location);
@@ -155,9 +298,7 @@ public class MemoryBasedJavaFileManager implements JavaFileManager {
 
 	@Override
 	public void close() throws IOException {
-		for (CloseableFilterableJavaFileObjectIterable closeable: toClose) {
-			closeable.close();
-		}
+		// Nothing to do, the classpath indexes are shared and outlive this file manager
 	}
 
 	public List<CompiledClassDefinition> getCompiledClasses() {
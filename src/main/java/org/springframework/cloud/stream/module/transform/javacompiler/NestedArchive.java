@@ -0,0 +1,73 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform.javacompiler;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A zip that is itself inside a zip (for example a library in the lib folder of a spring
+ * boot uberjar). Spring boot stores nested jars uncompressed, in which case the nested
+ * archive is simply a view onto a region of the mapped outer archive. A nested jar that
+ * has been compressed is inflated into memory when it is mapped. Either way individual
+ * entries are then located via the central directory of the nested jar rather than by
+ * inflating every entry before them. The mapping itself is held by an {@link ArchivePool}.
+ *
+ * @author agent
+ */
+public class NestedArchive {
+
+	private ArchivePool archivePool;
+	private File outerFile;
+	private int entry;
+	private String name;
+
+	/**
+	 * @param archivePool the pool from which to retrieve the mapped archives
+	 * @param outerFile the file for the outer archive
+	 * @param outerArchive the outer archive
+	 * @param entry the entry number of the nested archive within the outer archive
+	 */
+	public NestedArchive(ArchivePool archivePool, File outerFile, MappedArchive outerArchive, int entry) {
+		this.archivePool = archivePool;
+		this.outerFile = outerFile;
+		this.entry = entry;
+		this.name = outerArchive.getEntryName(entry);
+	}
+
+	/**
+	 * @return the archive containing the nested archive
+	 */
+	public File getOuterFile() {
+		return outerFile;
+	}
+
+	/**
+	 * @return the name of the nested archive within the outer archive (e.g. lib/foo.jar)
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the content of the nested archive
+	 * @throws IOException if the nested archive cannot be mapped
+	 */
+	public MappedArchive getArchive() throws IOException {
+		return archivePool.getNestedArchive(outerFile, entry);
+	}
+
+}
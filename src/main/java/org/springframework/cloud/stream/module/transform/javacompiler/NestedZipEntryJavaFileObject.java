@@ -15,18 +15,13 @@
  */
 package org.springframework.cloud.stream.module.transform.javacompiler;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
-import java.util.zip.ZipInputStream;
 
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.NestingKind;
@@ -42,23 +37,30 @@ import javax.tools.JavaFileObject;
  */
 public class NestedZipEntryJavaFileObject implements JavaFileObject {
 
-	private File outerFile;
-	private ZipFile outerZipFile;
-	private ZipEntry innerZipFile;
-	private ZipEntry innerZipFileEntry;
+	private NestedArchive nestedArchive;
+	private int entry;
+
+	// Read from the nested archive when first asked for, not when the object is created
+	private String name;
+	private long lastModified = -1;
 
 	private URI uri;
 
-	public NestedZipEntryJavaFileObject(File outerFile, ZipFile outerZipFile, ZipEntry innerZipFile, ZipEntry innerZipFileEntry) {
-		this.outerFile = outerFile;
-		this.outerZipFile = outerZipFile;
-		this.innerZipFile = innerZipFile;
-		this.innerZipFileEntry = innerZipFileEntry;
+	public NestedZipEntryJavaFileObject(NestedArchive nestedArchive, int entry) {
+		this.nestedArchive = nestedArchive;
+		this.entry = entry;
 	}
 
 	@Override
 	public String getName() {
-		return innerZipFileEntry.getName(); // Example: a/b/C.class
+		if (name == null) {
+			try {
+				name = nestedArchive.getArchive().getEntryName(entry);
+			} catch (IOException ioe) {
+				throw new IllegalStateException("Unable to read the name of entry "+entry+" in "+nestedArchive.getName(),ioe);
+			}
+		}
+		return name; // Example: a/b/C.class
 	}
 
 	@Override
@@ -66,7 +68,7 @@ public class NestedZipEntryJavaFileObject implements JavaFileObject {
 		if (uri == null) {
 			String uriString = null;
 			try {
-				uriString = "zip:"+outerFile.getAbsolutePath()+"!"+innerZipFile.getName()+"!"+innerZipFileEntry.getName();
+				uriString = "zip:"+nestedArchive.getOuterFile().getAbsolutePath()+"!"+nestedArchive.getName()+"!"+getName();
 				uri = new URI(uriString);
 			} catch (URISyntaxException e) {
 				throw new IllegalStateException("Unexpected URISyntaxException for string '"+uriString+"'",e);
@@ -77,18 +79,7 @@ public class NestedZipEntryJavaFileObject implements JavaFileObject {
 	
 	@Override
 	public InputStream openInputStream() throws IOException {
-		// Find the inner zip file inside the outer zip file, then
-		// find the relevant entry, then return the stream.
-		InputStream innerZipFileInputStream = this.outerZipFile.getInputStream(innerZipFile);
-		ZipInputStream innerZipInputStream = new ZipInputStream(innerZipFileInputStream);
-		ZipEntry nextEntry = innerZipInputStream.getNextEntry();
-		while (nextEntry != null) {
-			if (nextEntry.getName().equals(innerZipFileEntry.getName())) {
-				return innerZipInputStream;
-			}
-			nextEntry = innerZipInputStream.getNextEntry();
-		}
-		throw new IllegalStateException("Unable to locate nested zip entry "+innerZipFileEntry.getName()+" in zip "+innerZipFile.getName()+" inside zip "+outerZipFile.getName());
+		return nestedArchive.getArchive().getInputStream(entry);
 	}
 
 	@Override
@@ -99,7 +90,14 @@ public class NestedZipEntryJavaFileObject implements JavaFileObject {
 
 	@Override
 	public long getLastModified() {
-		return innerZipFileEntry.getTime();
+		if (lastModified == -1) {
+			try {
+				lastModified = nestedArchive.getArchive().getTime(entry);
+			} catch (IOException ioe) {
+				return 0;
+			}
+		}
+		return lastModified;
 	}
 
 	@Override
@@ -151,9 +149,9 @@ public class NestedZipEntryJavaFileObject implements JavaFileObject {
 	
 	@Override
 	public int hashCode() {
-		int hc = outerFile.getName().hashCode();
-		hc = hc * 37 + innerZipFile.getName().hashCode();
-		hc = hc * 37 + innerZipFileEntry.getName().hashCode();
+		int hc = nestedArchive.getOuterFile().getName().hashCode();
+		hc = hc * 37 + nestedArchive.getName().hashCode();
+		hc = hc * 37 + getName().hashCode();
 		return hc;
 	}
 	
@@ -163,9 +161,9 @@ public class NestedZipEntryJavaFileObject implements JavaFileObject {
 			return false;
 		}
 		NestedZipEntryJavaFileObject that = (NestedZipEntryJavaFileObject)obj;
-		return  (outerFile.getName().equals(that.outerFile.getName())) &&
-				(innerZipFile.getName().equals(that.innerZipFile.getName())) &&
-				(innerZipFileEntry.getName().equals(that.innerZipFileEntry.getName()));
+		return  (nestedArchive.getOuterFile().getName().equals(that.nestedArchive.getOuterFile().getName())) &&
+				(nestedArchive.getName().equals(that.nestedArchive.getName())) &&
+				(getName().equals(that.getName()));
 	}
 	
 
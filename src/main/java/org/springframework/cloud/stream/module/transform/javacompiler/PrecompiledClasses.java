@@ -0,0 +1,113 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform.javacompiler;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Class definitions compiled at build time and packaged as resources, so that code which is
+ * known when the application is built does not need compiling when it starts. Entries use
+ * the {@link CompiledClassCache} format but are keyed only by the class name and source code:
+ * the classpath at build time is not the one used at runtime so cannot be part of the key.
+ *
+ * @author agent
+ */
+public class PrecompiledClasses {
+
+	private final static Logger logger = LoggerFactory.getLogger(PrecompiledClasses.class);
+
+	public final static String RESOURCE_DIRECTORY = "META-INF/precompiled/";
+
+	private final ClassLoader classLoader;
+
+	/**
+	 * @param classLoader the loader from which to retrieve the precompiled class resources
+	 */
+	public PrecompiledClasses(ClassLoader classLoader) {
+		this.classLoader = classLoader;
+	}
+
+	/**
+	 * @param className the name of the class (dotted form, e.g. com.foo.bar.Goo)
+	 * @param classSourceCode the full source code for the class
+	 * @return the key under which the compiled form of that source is stored
+	 */
+	public static String getKey(String className, String classSourceCode) {
+		return CompiledClassCache.hash(className + '\0' + classSourceCode);
+	}
+
+	/**
+	 * @param className the name of the class (dotted form, e.g. com.foo.bar.Goo)
+	 * @param classSourceCode the full source code for the class
+	 * @return the class definitions compiled from that source at build time, or null if there are none
+	 */
+	public List<CompiledClassDefinition> get(String className, String classSourceCode) {
+		String resourceName = RESOURCE_DIRECTORY + getKey(className, classSourceCode) + CompiledClassCache.SUFFIX;
+		try (InputStream is = classLoader.getResourceAsStream(resourceName)) {
+			if (is == null) {
+				return null;
+			}
+			List<CompiledClassDefinition> ccds = CompiledClassCache.read(is);
+			if (ccds == null) {
+				logger.debug("Ignoring precompiled classes {} with unexpected format",resourceName);
+			}
+			return ccds;
+		} catch (IOException ioe) {
+			logger.debug("Unable to read precompiled classes {}",resourceName,ioe);
+			return null;
+		}
+	}
+
+	/**
+	 * @return true if no classes were precompiled, the loader has no precompiled class resource directory
+	 */
+	public boolean isEmpty() {
+		return classLoader.getResource(RESOURCE_DIRECTORY) == null;
+	}
+
+	/**
+	 * Store class definitions where {@link #get(String, String)} will find them once the
+	 * output directory is packaged.
+	 *
+	 * @param outputDirectory the root of the classes directory (e.g. target/classes)
+	 * @param className the name of the class (dotted form, e.g. com.foo.bar.Goo)
+	 * @param classSourceCode the full source code for the class
+	 * @param ccds the class definitions produced by compiling the source
+	 * @return the file written
+	 * @throws IOException if the file cannot be written
+	 */
+	public static File write(File outputDirectory, String className, String classSourceCode,
+			List<CompiledClassDefinition> ccds) throws IOException {
+		File directory = new File(outputDirectory, RESOURCE_DIRECTORY);
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Unable to create directory "+directory);
+		}
+		File file = new File(directory, getKey(className, classSourceCode) + CompiledClassCache.SUFFIX);
+		try (OutputStream os = new FileOutputStream(file)) {
+			CompiledClassCache.write(os, ccds);
+		}
+		return file;
+	}
+
+}
@@ -15,20 +15,16 @@
  */
 package org.springframework.cloud.stream.module.transform.javacompiler;
 
+import java.io.File;
 import java.io.IOException;
-import java.io.Writer;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
-import javax.tools.Diagnostic;
-import javax.tools.Diagnostic.Kind;
-import javax.tools.DiagnosticCollector;
-import javax.tools.JavaCompiler;
-import javax.tools.JavaCompiler.CompilationTask;
 import javax.tools.JavaFileObject;
-import javax.tools.StandardLocation;
-import javax.tools.ToolProvider;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,67 +38,359 @@ import org.springframework.stereotype.Service;
 @Service
 public class RuntimeJavaCompiler {
 	
-	private JavaCompiler compiler =  ToolProvider.getSystemJavaCompiler();
-	
 	private static Logger logger = LoggerFactory.getLogger(RuntimeJavaCompiler.class);
-	
+
+	// Loaded compiler classes, JIT compiled code and classpath indexes are shared by every
+	// instance, so whether a compilation is cold or warm is a JVM wide concern
+	private final static CompilationStatistics statistics = new CompilationStatistics();
+
+	private final static CompilationMetrics metrics = new CompilationMetrics();
+
+	private final static String WARM_UP_CLASS_NAME = "org.springframework.cloud.stream.module.transform.javacompiler.WarmUp";
+
+	/**
+	 * Compiled to warm up the compiler, exercises generics, lambdas and type inference
+	 */
+	private final static String WARM_UP_SOURCE =
+			"package org.springframework.cloud.stream.module.transform.javacompiler;\n"+
+			"import java.util.*;\n"+
+			"import java.util.function.*;\n"+
+			"public class WarmUp {\n"+
+			" public Function<List<String>,Map<Integer,List<String>>> warmUp() {\n"+
+			"  return list -> {\n"+
+			"   Map<Integer,List<String>> result = new HashMap<>();\n"+
+			"   list.stream().filter(s -> !s.isEmpty()).forEach(s -> result.computeIfAbsent(s.length(), k -> new ArrayList<>()).add(s));\n"+
+			"   return result;\n"+
+			"  };\n"+
+			" }\n"+
+			"}\n";
+
+	private CompilerBackend compilerBackend = createDefaultCompilerBackend();
+
+	private CompilationResultCache compilationResultCache = new CompilationResultCache();
+
+	// Long lived, each compilation gets its own file manager from this that shares its classpath state
+	private volatile MemoryBasedJavaFileManager sharedFileManager = new MemoryBasedJavaFileManager();
+
+	private ArtifactFilter artifactFilter = ArtifactFilter.ALL;
+
+	// If set, compilations are against these stubs rather than the classpath
+	private File stubArchive;
+
+	// Tracks the loaders that compiled classes are defined in, so that they can be seen to be unloaded
+	private final ClassLoaderRegistry classLoaderRegistry = new ClassLoaderRegistry();
+
+	// Runs asynchronous compilations, created on first use
+	private Executor executor;
+
+	/**
+	 * @return the compiler backend in use, javac unless running without a JDK
+	 */
+	public CompilerBackend getCompilerBackend() {
+		return compilerBackend;
+	}
+
+	/**
+	 * Change the compiler used. Any cached compilation results are discarded.
+	 * @param compilerBackend the compiler backend to use
+	 */
+	public void setCompilerBackend(CompilerBackend compilerBackend) {
+		if (compilerBackend == null) {
+			throw new IllegalArgumentException("A compiler backend is required");
+		}
+		logger.info("Using compiler backend {}",compilerBackend.getName());
+		this.compilerBackend = compilerBackend;
+		CompilationResultCache cache = this.compilationResultCache;
+		if (cache != null) {
+			cache.clear();
+		}
+	}
+
+	/**
+	 * @param name the name of a compiler backend (javac or ecj)
+	 * @return a new instance of that compiler backend
+	 */
+	public static CompilerBackend createCompilerBackend(String name) {
+		if (JavacCompilerBackend.NAME.equals(name)) {
+			return new JavacCompilerBackend();
+		} else if (EcjCompilerBackend.NAME.equals(name)) {
+			return new EcjCompilerBackend();
+		}
+		throw new IllegalArgumentException("Unknown compiler backend '"+name+"', expected one of: "+
+				JavacCompilerBackend.NAME+", "+EcjCompilerBackend.NAME);
+	}
+
+	private static CompilerBackend createDefaultCompilerBackend() {
+		if (JavacCompilerBackend.isAvailable()) {
+			return new JavacCompilerBackend();
+		}
+		logger.info("No system Java compiler available, falling back to {}",EcjCompilerBackend.NAME);
+		return new EcjCompilerBackend();
+	}
+
+	/**
+	 * @return the filter determining which jars on the classpath are compiled against
+	 */
+	public ArtifactFilter getArtifactFilter() {
+		return artifactFilter;
+	}
+
+	/**
+	 * Change which jars on the classpath are compiled against, by default all of them. Any cached
+	 * compilation results are discarded.
+	 * @param artifactFilter determines which jars are compiled against
+	 */
+	public void setArtifactFilter(ArtifactFilter artifactFilter) {
+		if (artifactFilter == null) {
+			throw new IllegalArgumentException("An artifact filter is required");
+		}
+		logger.info("Compiling against classpath artifacts {}",artifactFilter);
+		this.artifactFilter = artifactFilter;
+		resetFileManager();
+	}
+
+	/**
+	 * @return the stub archive compiled against, or null if compiling against the classpath
+	 */
+	public File getStubArchive() {
+		return stubArchive;
+	}
+
+	/**
+	 * Compile against a stub archive created by {@link StubArchiveGenerator} rather than the
+	 * classpath. The artifact filter does not apply to the stubs, they only contain what was
+	 * selected when they were generated. Compiled classes are still defined against the real
+	 * classes on the classpath. Any cached compilation results are discarded.
+	 * @param stubArchive the stub archive to compile against, or null to compile against the classpath
+	 */
+	public void setStubArchive(File stubArchive) {
+		if (stubArchive != null && !stubArchive.isFile()) {
+			throw new IllegalArgumentException("Stub archive not found: "+stubArchive);
+		}
+		logger.info("Compiling against {}",stubArchive == null ? "the classpath" : "stub archive "+stubArchive);
+		this.stubArchive = stubArchive;
+		resetFileManager();
+	}
+
+	private void resetFileManager() {
+		if (stubArchive != null) {
+			this.sharedFileManager = new MemoryBasedJavaFileManager(stubArchive.getAbsolutePath(), ArtifactFilter.ALL);
+		} else {
+			this.sharedFileManager = new MemoryBasedJavaFileManager(artifactFilter);
+		}
+		CompilationResultCache cache = this.compilationResultCache;
+		if (cache != null) {
+			cache.clear();
+		}
+	}
+
+	/**
+	 * @return the counters and timers for each phase of compilation, these are shared by all compiler instances
+	 */
+	public CompilationMetrics getCompilationMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @return the cold and warm compilation times, these are shared by all compiler instances
+	 */
+	public CompilationStatistics getCompilationStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * Compile a small class with the current backend, so that the compiler classes are loaded
+	 * and the classpath is indexed before the first real compilation. Nothing is cached
+	 * or loaded.
+	 * @return true if the warm up compilation was successful
+	 */
+	public boolean warmUp() {
+		CompilerBackend backend = this.compilerBackend;
+		logger.info("Warming up compiler {}",backend.getName());
+		long stime = System.nanoTime();
+		JavaFileObject sourceFile = InMemoryJavaFileObject.getSourceJavaFileObject(WARM_UP_CLASS_NAME, WARM_UP_SOURCE);
+		List<CompilationMessage> compilationMessages = new ArrayList<>();
+		boolean success = backend.compile(sourceFile, sharedFileManager.forCompilation(), compilationMessages);
+		recordCompilation(backend, WARM_UP_CLASS_NAME, System.nanoTime() - stime);
+		if (!success) {
+			logger.warn("Warm up compilation failed: {}",compilationMessages);
+		}
+		return success;
+	}
+
+	/**
+	 * Run {@link #warmUp()} on a daemon thread.
+	 * @return the thread performing the warm up
+	 */
+	public Thread warmUpInBackground() {
+		Thread thread = new Thread(() -> {
+			try {
+				warmUp();
+			} catch (Throwable t) {
+				logger.warn("Unexpected problem warming up the compiler",t);
+			}
+		}, "compiler-warm-up");
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	/**
+	 * @return the registry of the class loaders that compiled classes have been defined in
+	 */
+	public ClassLoaderRegistry getClassLoaderRegistry() {
+		return classLoaderRegistry;
+	}
+
+	/**
+	 * Indicate the classes loaded for a compilation result are no longer in use. The result is
+	 * removed from the cache so that, once nothing else references them, the classes and their
+	 * loader can be unloaded. Compiling the same source again will define the classes in a new loader.
+	 * @param compilationResult a result returned from this compiler
+	 */
+	public void release(CompilationResult compilationResult) {
+		CompilationResultCache cache = this.compilationResultCache;
+		if (cache != null) {
+			cache.remove(compilationResult);
+		}
+		if (classLoaderRegistry.release(compilationResult.getClassLoaderGeneration())) {
+			logger.info("Released class loader generation {}: {}",compilationResult.getClassLoaderGeneration(),classLoaderRegistry);
+		}
+	}
+
+	/**
+	 * @return the cache consulted before compiling, or null if results are not being cached
+	 */
+	public CompilationResultCache getCompilationResultCache() {
+		return compilationResultCache;
+	}
+
+	/**
+	 * @param compilationResultCache the cache to consult before compiling, or null to always compile
+	 */
+	public void setCompilationResultCache(CompilationResultCache compilationResultCache) {
+		this.compilationResultCache = compilationResultCache;
+	}
+
+	/**
+	 * @return the executor that runs asynchronous compilations, by default a single daemon thread
+	 */
+	public synchronized Executor getExecutor() {
+		if (executor == null) {
+			executor = Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "runtime-java-compiler");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return executor;
+	}
+
+	/**
+	 * @param executor the executor to run asynchronous compilations
+	 */
+	public synchronized void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Compile the named class on the executor, see {@link #compile(String, String)}.
+	 * @param className the name of the class (dotted form, e.g. com.foo.bar.Goo)
+	 * @param classSourceCode the full source code for the class
+	 * @return a future that completes with the CompilationResult
+	 */
+	public CompletableFuture<CompilationResult> compileAsync(String className, String classSourceCode) {
+		return CompletableFuture.supplyAsync(() -> compile(className, classSourceCode), getExecutor());
+	}
+
 	/**
 	 * Compile the named class consisting of the supplied source code. If successful load the class
 	 * and return it. Multiple classes may get loaded if the source code included anonymous/inner/local
-	 * classes.
+	 * classes. If the same source has been compiled recently the previous result is returned.
 	 * @param className the name of the class (dotted form, e.g. com.foo.bar.Goo)
 	 * @param classSourceCode the full source code for the class
 	 * @return a CompilationResult that encapsulates what happened during compilation (classes/messages produced)
 	 */
 	public CompilationResult compile(String className, String classSourceCode) {
-		logger.info("Compiling source for class {} using compiler {}",className,compiler.getClass().getName());
-		
-		DiagnosticCollector<JavaFileObject> diagnosticCollector = new DiagnosticCollector<JavaFileObject>();
-		MemoryBasedJavaFileManager fileManager = new MemoryBasedJavaFileManager();
-//		JavaFileObject sourceFile = new StringBasedJavaSourceFileObject(className, classSourceCode);
+		CompilationResultCache cache = this.compilationResultCache;
+		if (cache != null) {
+			CompilationResult cachedResult = cache.get(className, classSourceCode);
+			if (cachedResult != null) {
+				logger.info("Using cached compilation result for class {}: {}",className,cache);
+				return cachedResult;
+			}
+		}
+		CompilationResult compilationResult = doCompile(className, classSourceCode);
+		if (cache != null) {
+			cache.put(className, classSourceCode, compilationResult);
+		}
+		return compilationResult;
+	}
+
+	private CompilationResult doCompile(String className, String classSourceCode) {
+		CompilerBackend backend = this.compilerBackend;
+		logger.info("Compiling source for class {} using compiler {}",className,backend.getName());
+		long stime = System.nanoTime();
+		MemoryBasedJavaFileManager fileManager = sharedFileManager.forCompilation();
 		JavaFileObject sourceFile = InMemoryJavaFileObject.getSourceJavaFileObject(className, classSourceCode);
-//				new InMemoryJavaFileObject(StandardLocation.SOURCE_PATH, className, javax.tools.JavaFileObject.Kind.SOURCE, null);
-//		try (Writer w = sourceFile.openWriter()) {
-//			w.write(classSourceCode);
-//		} catch (IOException ioe) {
-//			ioe.printStackTrace();
-//		}
-		Iterable<? extends JavaFileObject> compilationUnits = Arrays.asList(sourceFile);
-		CompilationTask task = compiler.getTask(null, fileManager , diagnosticCollector, null, null, compilationUnits);
-
-		boolean success = task.call();
+		List<CompilationMessage> compilationMessages = new ArrayList<>();
+		long compileStime = System.nanoTime();
+		boolean success = backend.compile(sourceFile, fileManager, compilationMessages);
+		long etime = System.nanoTime();
+		metrics.recordCompilation(success, etime - compileStime, fileManager);
+		recordCompilation(backend, className, etime - stime);
 		CompilationResult compilationResult = new CompilationResult(success);
-		
 		// If successful there may be no errors but there might be info/warnings
-		for (Diagnostic<? extends JavaFileObject> diagnostic : diagnosticCollector.getDiagnostics()) {
-			CompilationMessage.Kind kind = (diagnostic.getKind()==Kind.ERROR?CompilationMessage.Kind.ERROR:CompilationMessage.Kind.OTHER);
-//			String sourceCode = ((StringBasedJavaSourceFileObject)diagnostic.getSource()).getSourceCode();
-			String sourceCode =null;
-			try {
-				sourceCode = (String)diagnostic.getSource().getCharContent(true);
-			} catch (IOException ioe) {
-				// Unexpected, but leave sourceCode null to indicate it was not retrievable
-			}
-			int startPosition = (int)diagnostic.getPosition();
-			if (startPosition == Diagnostic.NOPOS) {
-				startPosition = (int)diagnostic.getStartPosition();
-			}
-			CompilationMessage compilationMessage = new CompilationMessage(kind,diagnostic.getMessage(null),sourceCode,startPosition,(int)diagnostic.getEndPosition());
+		for (CompilationMessage compilationMessage: compilationMessages) {
 			compilationResult.recordCompilationMessage(compilationMessage);
 		}
-		if (success) {			
-			List<CompiledClassDefinition> ccds = fileManager.getCompiledClasses();			
-			List<Class<?>> classes = new ArrayList<>();
-			try (SimpleClassLoader ccl = new SimpleClassLoader(this.getClass().getClassLoader())) {
-				for (CompiledClassDefinition ccd: ccds) {
-					Class<?> clazz = ccl.defineClass(ccd.getClassName(), ccd.getBytes());
-					classes.add(clazz);
-				}
-			} catch (IOException ioe) {
-				logger.debug("Unexpected exception defining classes",ioe);
-			}
-			compilationResult.setCompiledClasses(classes);
+		if (success) {
+			List<CompiledClassDefinition> ccds = fileManager.getCompiledClasses();
+			compilationResult.setCompiledClassDefinitions(ccds);
+			defineClassesInNewLoader(compilationResult, ccds);
 		}
 		return compilationResult;
 	}
+
+	private void recordCompilation(CompilerBackend backend, String className, long elapsedNanos) {
+		boolean cold = statistics.recordCompilation(backend.getName(), elapsedNanos);
+		logger.info("Compiled {} with {} in {}ms ({}) {}",className,backend.getName(),
+				TimeUnit.NANOSECONDS.toMillis(elapsedNanos),(cold?"cold":"warm"),statistics);
+	}
+
+	/**
+	 * Load class definitions that were produced by an earlier compilation, for example
+	 * ones retrieved from a {@link CompiledClassCache}. No compilation occurs.
+	 * @param ccds the class definitions to load
+	 * @return a successful CompilationResult containing the loaded classes
+	 */
+	public CompilationResult defineClasses(List<CompiledClassDefinition> ccds) {
+		logger.info("Defining {} previously compiled classes",ccds.size());
+		CompilationResult compilationResult = new CompilationResult(true);
+		compilationResult.setCompiledClassDefinitions(ccds);
+		defineClassesInNewLoader(compilationResult, ccds);
+		return compilationResult;
+	}
+
+	/**
+	 * Each set of classes is defined in its own loader, so that the classes can be unloaded
+	 * when that loader is no longer referenced, independently of any others.
+	 */
+	private void defineClassesInNewLoader(CompilationResult compilationResult, List<CompiledClassDefinition> ccds) {
+		List<Class<?>> classes = new ArrayList<>();
+		long metaspaceBefore = ClassLoaderRegistry.getMetaspaceUsed();
+		try (SimpleClassLoader ccl = new SimpleClassLoader(this.getClass().getClassLoader())) {
+			long stime = System.nanoTime();
+			for (CompiledClassDefinition ccd: ccds) {
+				Class<?> clazz = ccl.defineClass(ccd.getClassName(), ccd.getBytes());
+				classes.add(clazz);
+			}
+			metrics.recordDefinition(ccds, System.nanoTime() - stime);
+			long metaspaceBytes = metaspaceBefore == -1 ? -1 : ClassLoaderRegistry.getMetaspaceUsed() - metaspaceBefore;
+			compilationResult.setClassLoaderGeneration(classLoaderRegistry.register(ccl, ccds, metaspaceBytes));
+		} catch (IOException ioe) {
+			logger.debug("Unexpected exception defining classes",ioe);
+		}
+		compilationResult.setCompiledClasses(classes);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform.javacompiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.tools.JavaFileObject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.asm.ClassReader;
+import org.springframework.asm.ClassVisitor;
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.FieldVisitor;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+
+/**
+ * Creates a stub archive for a classpath: a jar containing a signature-only version of each
+ * class, in the spirit of the JDK's <tt>ct.sym</tt>. The compiler only needs the signatures of the
+ * classes it compiles against so the stubs have no method bodies, debug information or
+ * private members, making them a fraction of the size. Entries are stored uncompressed so
+ * the class files can be read straight from the mapped archive without inflating them.
+ * <p>
+ * Run when the application is built, by the <tt>stubs</tt> maven profile, to create a stub
+ * archive for its classpath. Setting the compileStubs property to the archive then compiles
+ * against it rather than the classpath.
+ *
+ * @author agent
+ */
+public class StubArchiveGenerator {
+
+	private final static Logger logger = LoggerFactory.getLogger(StubArchiveGenerator.class);
+
+	private final static String CONSTRUCTOR_NAME = "<init>";
+
+	/**
+	 * @param args the archive to create, optionally followed by the artifact ids of the jars
+	 * on the classpath to include (see {@link ArtifactFilter#parse(String)}), by default all are included
+	 * @throws IOException if there is a problem reading the classpath or writing the archive
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			throw new IllegalArgumentException("Usage: StubArchiveGenerator <stubArchive> [artifactIds]");
+		}
+		ArtifactFilter artifactFilter = args.length > 1 ? ArtifactFilter.parse(args[1]) : ArtifactFilter.ALL;
+		generate(System.getProperty("java.class.path"), artifactFilter, new File(args[0]));
+	}
+
+	/**
+	 * @param classpath the classpath to create stubs for
+	 * @param artifactFilter determines which jars on the classpath are included
+	 * @param stubArchive the archive to create
+	 * @return the number of classes in the archive
+	 * @throws IOException if there is a problem reading the classpath or writing the archive
+	 */
+	public static int generate(String classpath, ArtifactFilter artifactFilter, File stubArchive) throws IOException {
+		long stime = System.currentTimeMillis();
+		ClasspathIndex index = ClasspathIndex.forClasspath(classpath, artifactFilter);
+		File directory = stubArchive.getAbsoluteFile().getParentFile();
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Unable to create directory "+directory);
+		}
+		Set<String> written = new HashSet<>();
+		long originalBytes = 0;
+		long stubBytes = 0;
+		try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(stubArchive))) {
+			for (JavaFileObject jfo: index.list(null, true)) {
+				// As on the classpath, the first definition of a class wins
+				if (!written.add(jfo.getName())) {
+					continue;
+				}
+				byte[] bytes = readAll(jfo);
+				byte[] stub = createStub(bytes);
+				originalBytes += bytes.length;
+				stubBytes += stub.length;
+				ZipEntry entry = new ZipEntry(jfo.getName());
+				entry.setMethod(ZipEntry.STORED);
+				entry.setSize(stub.length);
+				entry.setCompressedSize(stub.length);
+				CRC32 crc = new CRC32();
+				crc.update(stub);
+				entry.setCrc(crc.getValue());
+				zos.putNextEntry(entry);
+				zos.write(stub);
+				zos.closeEntry();
+			}
+		}
+		logger.info("Created stub archive {} with {} classes, {} bytes of classes reduced to {} bytes, in {}ms",stubArchive,
+				written.size(),originalBytes,stubBytes,(System.currentTimeMillis()-stime));
+		return written.size();
+	}
+
+	/**
+	 * @param bytes a class file
+	 * @return the class file without method bodies, debug information or private members
+	 */
+	public static byte[] createStub(byte[] bytes) {
+		ClassReader reader = new ClassReader(bytes);
+		ClassWriter writer = new ClassWriter(0);
+		reader.accept(new ClassVisitor(Opcodes.ASM5, writer) {
+
+			@Override
+			public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+				if ((access & Opcodes.ACC_PRIVATE) != 0) {
+					return null;
+				}
+				return super.visitField(access, name, desc, signature, value);
+			}
+
+			@Override
+			public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+				// Private constructors are kept, they prevent a default constructor being assumed
+				if ((access & Opcodes.ACC_PRIVATE) != 0 && !name.equals(CONSTRUCTOR_NAME)) {
+					return null;
+				}
+				return super.visitMethod(access, name, desc, signature, exceptions);
+			}
+		}, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+		return writer.toByteArray();
+	}
+
+	private static byte[] readAll(JavaFileObject jfo) throws IOException {
+		try (InputStream is = jfo.openInputStream()) {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = is.read(buffer)) != -1) {
+				baos.write(buffer, 0, read);
+			}
+			return baos.toByteArray();
+		}
+	}
+
+}
@@ -23,8 +23,6 @@ import java.io.Reader;
 import java.io.Writer;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.NestingKind;
@@ -33,15 +31,19 @@ import javax.tools.JavaFileObject;
 public class ZipEntryJavaFileObject implements JavaFileObject {
 
 	private File containingFile;
-	private ZipFile zf;
-	private ZipEntry ze;
+	private ArchivePool archivePool;
+	private int entry;
+
+	// Read from the archive when first asked for, not when the object is created
+	private String name;
+	private long lastModified = -1;
 
 	private URI uri;
 
-	public ZipEntryJavaFileObject(File containingFile, ZipFile zipFile, ZipEntry entry) {
+	public ZipEntryJavaFileObject(File containingFile, ArchivePool archivePool, int entry) {
 		this.containingFile = containingFile;
-		this.zf = zipFile;
-		this.ze = entry;
+		this.archivePool = archivePool;
+		this.entry = entry;
 	}
 
 	@Override
@@ -49,7 +51,7 @@ public class ZipEntryJavaFileObject implements JavaFileObject {
 		if (uri == null) {
 			String uriString = null;
 			try {
-				uriString = "zip:" + containingFile.getAbsolutePath() + "!" + ze.getName();
+				uriString = "zip:" + containingFile.getAbsolutePath() + "!" + getName();
 				uri = new URI(uriString);
 			} catch (URISyntaxException e) {
 				throw new IllegalStateException("Unexpected URISyntaxException for string '" + uriString + "'", e);
@@ -60,12 +62,19 @@ public class ZipEntryJavaFileObject implements JavaFileObject {
 
 	@Override
 	public String getName() {
-		return ze.getName(); // a/b/C.class
+		if (name == null) {
+			try {
+				name = archivePool.getArchive(containingFile).getEntryName(entry);
+			} catch (IOException ioe) {
+				throw new IllegalStateException("Unable to read the name of entry " + entry + " in " + containingFile, ioe);
+			}
+		}
+		return name; // a/b/C.class
 	}
 
 	@Override
 	public InputStream openInputStream() throws IOException {
-		return zf.getInputStream(ze);
+		return archivePool.getArchive(containingFile).getInputStream(entry);
 	}
 
 	@Override
@@ -92,7 +101,14 @@ public class ZipEntryJavaFileObject implements JavaFileObject {
 
 	@Override
 	public long getLastModified() {
-		return ze.getTime();
+		if (lastModified == -1) {
+			try {
+				lastModified = archivePool.getArchive(containingFile).getTime(entry);
+			} catch (IOException ioe) {
+				return 0;
+			}
+		}
+		return lastModified;
 	}
 
 	@Override
@@ -128,7 +144,7 @@ public class ZipEntryJavaFileObject implements JavaFileObject {
 	@Override
 	public int hashCode() {
 		int hc = containingFile.getName().hashCode();
-		hc = hc * 37 + ze.getName().hashCode();
+		hc = hc * 37 + getName().hashCode();
 		return hc;
 	}
 	
@@ -139,7 +155,7 @@ public class ZipEntryJavaFileObject implements JavaFileObject {
 		}
 		ZipEntryJavaFileObject that = (ZipEntryJavaFileObject)obj;
 		return  (containingFile.getName().equals(that.containingFile.getName())) &&
-				(ze.getName().equals(that.ze.getName()));
+				(getName().equals(that.getName()));
 	}
 
 }
\ No newline at end of file
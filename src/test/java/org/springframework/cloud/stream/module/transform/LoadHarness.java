@@ -0,0 +1,209 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform;
+
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.cloud.stream.messaging.Processor;
+import org.springframework.cloud.stream.test.binder.MessageCollector;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.GenericMessage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * Pushes messages through the processor's input channel, bound by the test binder, and
+ * collects the output with the {@link MessageCollector}, measuring the sustained throughput,
+ * the latency from sending a message to collecting its output and the GC pauses whilst
+ * doing so. Run it with the <tt>load</tt> profile, the results are written as JSON.
+ * <p>
+ * Each message payload is the time it was sent (from <tt>System.nanoTime()</tt>), the
+ * latency is measured for output payloads that are still a send time, as they are for the
+ * default code. Options are application properties, so they can be given as arguments:
+ * <ul>
+ * <li><tt>load.messages</tt> the number of messages measured (default 2000000)
+ * <li><tt>load.warmUpMessages</tt> the number of messages sent before measuring (default 200000)
+ * <li><tt>load.results</tt> the file the results are written to (default target/load-results.json)
+ * <li><tt>code</tt> the code for the processor (default {@link #DEFAULT_CODE})
+ * </ul>
+ *
+ * @author agent
+ */
+public class LoadHarness {
+
+	private static Logger logger = LoggerFactory.getLogger(LoadHarness.class);
+
+	public final static String DEFAULT_CODE = "return input -> input.buffer(5).map(list->list.get(4));";
+
+	private final Processor channels;
+
+	private final BlockingQueue<Message<?>> output;
+
+	private final List<Long> gcPauseMillis = Collections.synchronizedList(new ArrayList<>());
+
+	private volatile boolean recordingGcPauses;
+
+	LoadHarness(Processor channels, MessageCollector collector) {
+		this.channels = channels;
+		this.output = collector.forChannel(channels.output());
+	}
+
+	public static void main(String[] args) throws Exception {
+		SpringApplication application = ProgrammableRxJavaProcessorApplication.createApplication();
+		Map<String,Object> defaultProperties = new LinkedHashMap<>();
+		defaultProperties.put("code", DEFAULT_CODE);
+		defaultProperties.put("server.port", 0);
+		application.setDefaultProperties(defaultProperties);
+		ConfigurableApplicationContext context = application.run(args);
+		int exitCode = 0;
+		try {
+			Environment environment = context.getEnvironment();
+			Map<String, Processor> processors = context.getBeansOfType(Processor.class);
+			if (processors.size() != 1) {
+				throw new IllegalStateException("Expected one bound processor but found "+processors.keySet());
+			}
+			LoadHarness harness = new LoadHarness(processors.values().iterator().next(), context.getBean(MessageCollector.class));
+			Map<String, Object> results = harness.run(environment.getProperty("load.warmUpMessages", Long.class, 200_000L),
+					environment.getProperty("load.messages", Long.class, 2_000_000L));
+			results.put("code", environment.getProperty("code"));
+			File resultsFile = new File(environment.getProperty("load.results", "target/load-results.json"));
+			ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+			mapper.writeValue(resultsFile, results);
+			logger.info("Load results written to {}:\n{}",resultsFile.getAbsolutePath(),mapper.writeValueAsString(results));
+		} catch (Exception e) {
+			logger.error("Load run failed",e);
+			exitCode = 1;
+		}
+		System.exit(SpringApplication.exit(context, () -> 0) + exitCode);
+	}
+
+	/**
+	 * @param warmUpMessages how many messages to send before measuring
+	 * @param messages how many messages to measure
+	 * @return the results, keyed by name
+	 */
+	Map<String, Object> run(long warmUpMessages, long messages) {
+		send(warmUpMessages, null);
+		listenForGcPauses();
+		long[] latencies = new long[(int)Math.min(messages, Integer.MAX_VALUE - 8)];
+		long gcCountBefore = getGcCount();
+		recordingGcPauses = true;
+		long stime = System.nanoTime();
+		long[] counts = send(messages, latencies);
+		long elapsedNanos = System.nanoTime() - stime;
+		recordingGcPauses = false;
+		long gcCount = getGcCount() - gcCountBefore;
+
+		Map<String, Object> results = new LinkedHashMap<>();
+		results.put("messages", messages);
+		results.put("outputMessages", counts[0]);
+		results.put("elapsedMillis", TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+		results.put("messagesPerSecond", messages * 1_000_000_000.0 / elapsedNanos);
+		results.put("latencyNanos", percentiles(latencies, (int)counts[1]));
+		List<Long> pauses;
+		synchronized (gcPauseMillis) {
+			pauses = new ArrayList<>(gcPauseMillis);
+		}
+		Map<String, Object> gc = new LinkedHashMap<>();
+		gc.put("collections", gcCount);
+		gc.put("pauseTotalMillis", pauses.stream().mapToLong(Long::longValue).sum());
+		gc.put("pauseMaxMillis", pauses.stream().mapToLong(Long::longValue).max().orElse(0));
+		gc.put("pausesMillis", pauses);
+		results.put("gc", gc);
+		return results;
+	}
+
+	/**
+	 * Sending is synchronous, the processor and the collector run on the sending thread, so
+	 * the output of each message is collected before sending the next.
+	 * @return the number of output messages and the number of latencies recorded
+	 */
+	private long[] send(long messages, long[] latencies) {
+		long outputCount = 0;
+		int latencyCount = 0;
+		for (long i = 0; i < messages; i++) {
+			channels.input().send(new GenericMessage<Object>(System.nanoTime()));
+			Message<?> message;
+			while ((message = output.poll()) != null) {
+				outputCount++;
+				if (latencies != null && latencyCount < latencies.length && message.getPayload() instanceof Long) {
+					latencies[latencyCount++] = System.nanoTime() - (Long)message.getPayload();
+				}
+			}
+		}
+		return new long[] {outputCount, latencyCount};
+	}
+
+	private static Map<String, Object> percentiles(long[] latencies, int count) {
+		Map<String, Object> percentiles = new LinkedHashMap<>();
+		percentiles.put("count", count);
+		if (count == 0) {
+			return percentiles;
+		}
+		Arrays.sort(latencies, 0, count);
+		percentiles.put("p50", latencies[(int)(count * 0.5)]);
+		percentiles.put("p90", latencies[(int)(count * 0.9)]);
+		percentiles.put("p99", latencies[(int)(count * 0.99)]);
+		percentiles.put("p999", latencies[(int)(count * 0.999)]);
+		percentiles.put("max", latencies[count - 1]);
+		return percentiles;
+	}
+
+	private void listenForGcPauses() {
+		NotificationListener listener = (Notification notification, Object handback) -> {
+			if (recordingGcPauses && notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+				GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData)notification.getUserData());
+				gcPauseMillis.add(info.getGcInfo().getDuration());
+			}
+		};
+		for (GarbageCollectorMXBean gcBean: ManagementFactory.getGarbageCollectorMXBeans()) {
+			if (gcBean instanceof NotificationEmitter) {
+				((NotificationEmitter)gcBean).addNotificationListener(listener, null, null);
+			}
+		}
+	}
+
+	private static long getGcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gcBean: ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, gcBean.getCollectionCount());
+		}
+		return count;
+	}
+
+}
@@ -17,7 +17,10 @@
 package org.springframework.cloud.stream.module.transform;
 
 import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.springframework.cloud.stream.test.matcher.MessageQueueMatcher.receivesPayloadThat;
 
 import org.junit.Ignore;
@@ -94,6 +97,51 @@ public abstract class ProgrammableRxJavaProcessorIntegrationTests {
 		}
 	}
 	
+	@WebIntegrationTest({"inputType=Integer","outputType=String","code=return input -> input.map(i->i*2).map(i->\"x\"+i);"})
+	public static class TypedIntegrationTests extends ProgrammableRxJavaProcessorIntegrationTests {
+		@Test
+		public void testBasic() {
+			channels.input().send(new GenericMessage<Object>("100"));
+			channels.input().send(new GenericMessage<Object>(200));
+			assertThat(collector.forChannel(channels.output()), receivesPayloadThat(is("x200")));
+			assertThat(collector.forChannel(channels.output()), receivesPayloadThat(is("x400")));
+		}
+	}
+
+	@WebIntegrationTest({"asyncCompilation=true","code=return input -> input.buffer(5).map(list->list.get(4));"})
+	public static class AsyncCompilationIntegrationTests extends ProgrammableRxJavaProcessorIntegrationTests {
+		@Test
+		public void testBasic() {
+			// Sent whilst compilation may still be in progress, they are buffered
+			channels.input().send(new GenericMessage<Object>(100));
+			channels.input().send(new GenericMessage<Object>(200));
+			channels.input().send(new GenericMessage<Object>(300));
+			channels.input().send(new GenericMessage<Object>(400));
+			channels.input().send(new GenericMessage<Object>(500));
+			assertThat(collector.forChannel(channels.output()), receivesPayloadThat(is(500)));
+		}
+	}
+
+	@WebIntegrationTest({"reloadEnabled=true","code=return input -> input.buffer(3).map(list->list.size());"})
+	public static class ReloadIntegrationTests extends ProgrammableRxJavaProcessorIntegrationTests {
+
+		@Autowired
+		private RxJavaTransformer transformer;
+
+		@Test
+		public void testReload() {
+			channels.input().send(new GenericMessage<Object>(100));
+			channels.input().send(new GenericMessage<Object>(200));
+			assertFalse(transformer.reload("return input -> input.map(s->((Integer)s)*").wasSuccessful());
+			assertTrue(transformer.reload("return input -> input.map(s->((Integer)s)*2);").wasSuccessful());
+			assertEquals("return input -> input.map(s->((Integer)s)*2);", transformer.getCurrentCode());
+			// The partially filled buffer from the previous code is flushed
+			assertThat(collector.forChannel(channels.output()), receivesPayloadThat(is(2)));
+			channels.input().send(new GenericMessage<Object>(300));
+			assertThat(collector.forChannel(channels.output()), receivesPayloadThat(is(600)));
+		}
+	}
+
 	// TODO rxjava math
 	
 	// TODO local class
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+import org.springframework.cloud.stream.annotation.rxjava.RxJavaProcessor;
+
+import rx.Observable;
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+
+/**
+ * 
+ * @author agent
+ */
+public class ReloadableRxJavaProcessorTests {
+
+	private static RxJavaProcessor<Object,Object> doubler = input -> input.map(i -> ((Integer)i)*2);
+
+	@Test
+	public void buffersUntilAvailable() throws Exception {
+		CompletableFuture<RxJavaProcessor<Object,Object>> future = new CompletableFuture<>();
+		ReloadableRxJavaProcessor processor = new ReloadableRxJavaProcessor(future, 10);
+		PublishSubject<Object> input = PublishSubject.create();
+		TestSubscriber<Object> output = new TestSubscriber<>();
+		processor.process(input).subscribe(output);
+		input.onNext(1);
+		input.onNext(2);
+		output.assertNoValues();
+		assertFalse(processor.isBound());
+		future.complete(doubler);
+		assertTrue(processor.isBound());
+		output.assertValues(2, 4);
+		input.onNext(3);
+		input.onCompleted();
+		output.assertValues(2, 4, 6);
+		output.assertCompleted();
+	}
+
+	@Test
+	public void blocksWhenBufferFull() throws Exception {
+		CompletableFuture<RxJavaProcessor<Object,Object>> future = new CompletableFuture<>();
+		ReloadableRxJavaProcessor processor = new ReloadableRxJavaProcessor(future, 2);
+		PublishSubject<Object> input = PublishSubject.create();
+		TestSubscriber<Object> output = new TestSubscriber<>();
+		processor.process(input).subscribe(output);
+		Thread producer = new Thread(() -> {
+			for (int i = 1; i <= 5; i++) {
+				input.onNext(i);
+			}
+		});
+		producer.start();
+		producer.join(500);
+		// Blocked on the third element
+		assertTrue(producer.isAlive());
+		future.complete(doubler);
+		producer.join();
+		output.assertValues(2, 4, 6, 8, 10);
+	}
+
+	@Test
+	public void inputCompletesBeforeAvailable() throws Exception {
+		CompletableFuture<RxJavaProcessor<Object,Object>> future = new CompletableFuture<>();
+		ReloadableRxJavaProcessor processor = new ReloadableRxJavaProcessor(future, 10);
+		TestSubscriber<Object> output = new TestSubscriber<>();
+		processor.process(Observable.just(1, 2, 3)).subscribe(output);
+		output.assertNotCompleted();
+		future.complete(doubler);
+		output.assertValues(2, 4, 6);
+		output.assertCompleted();
+	}
+
+	@Test
+	public void alreadyAvailable() throws Exception {
+		ReloadableRxJavaProcessor processor = new ReloadableRxJavaProcessor(CompletableFuture.completedFuture(doubler), 1);
+		List<Object> result = processor.process(Observable.just(1, 2, 3)).toList().toBlocking().single();
+		assertEquals(Arrays.asList(2, 4, 6), result);
+	}
+
+	@Test
+	public void onlyOneInput() throws Exception {
+		ReloadableRxJavaProcessor processor = new ReloadableRxJavaProcessor(CompletableFuture.completedFuture(doubler), 1);
+		PublishSubject<Object> input = PublishSubject.create();
+		TestSubscriber<Object> output = new TestSubscriber<>();
+		processor.process(input).subscribe(output);
+		TestSubscriber<Object> secondOutput = new TestSubscriber<>();
+		processor.process(Observable.just(1)).subscribe(secondOutput);
+		secondOutput.assertError(IllegalStateException.class);
+		// The first input is unaffected
+		input.onNext(1);
+		output.assertValues(2);
+		output.assertNoErrors();
+	}
+
+	@Test
+	public void noProcessorUntilReloaded() throws Exception {
+		CompletableFuture<RxJavaProcessor<Object,Object>> future = new CompletableFuture<>();
+		ReloadableRxJavaProcessor processor = new ReloadableRxJavaProcessor(future, 1);
+		PublishSubject<Object> input = PublishSubject.create();
+		TestSubscriber<Object> output = new TestSubscriber<>();
+		processor.process(input).subscribe(output);
+		input.onNext(1);
+		future.complete(null);
+		// Input is dropped rather than blocking
+		input.onNext(2);
+		input.onNext(3);
+		output.assertNoValues();
+		output.assertNoTerminalEvent();
+		assertFalse(processor.isBound());
+		processor.reload(doubler);
+		input.onNext(4);
+		output.assertValues(8);
+	}
+
+	@Test
+	public void reloadDrainsPreviousProcessor() throws Exception {
+		RxJavaProcessor<Object,Object> buffering = input -> input.buffer(3).map(list -> list.size());
+		ReloadableRxJavaProcessor processor = new ReloadableRxJavaProcessor(CompletableFuture.completedFuture(buffering), 10);
+		PublishSubject<Object> input = PublishSubject.create();
+		TestSubscriber<Object> output = new TestSubscriber<>();
+		processor.process(input).subscribe(output);
+		input.onNext(1);
+		input.onNext(2);
+		input.onNext(3);
+		input.onNext(4);
+		output.assertValues(3);
+		processor.reload(doubler);
+		assertEquals(2, processor.getGeneration());
+		// The partial buffer holding 4 is flushed by the old processor
+		output.assertValues(3, 1);
+		output.assertNoTerminalEvent();
+		input.onNext(5);
+		output.assertValues(3, 1, 10);
+		input.onCompleted();
+		output.assertCompleted();
+	}
+
+	@Test
+	public void reloadBeforeProcessing() throws Exception {
+		ReloadableRxJavaProcessor processor = new ReloadableRxJavaProcessor(new CompletableFuture<>(), 10);
+		processor.reload(doubler);
+		List<Object> result = processor.process(Observable.just(1, 2, 3)).toList().toBlocking().single();
+		assertEquals(Arrays.asList(2, 4, 6), result);
+	}
+
+	@Test
+	public void reloadBeforeInitialProcessorAvailable() throws Exception {
+		CompletableFuture<RxJavaProcessor<Object,Object>> future = new CompletableFuture<>();
+		ReloadableRxJavaProcessor processor = new ReloadableRxJavaProcessor(future, 10);
+		PublishSubject<Object> input = PublishSubject.create();
+		TestSubscriber<Object> output = new TestSubscriber<>();
+		processor.process(input).subscribe(output);
+		input.onNext(1);
+		processor.reload(doubler);
+		output.assertValues(2);
+		// The initial processor arriving late is ignored
+		future.complete(input2 -> input2.map(i -> "wrong"));
+		input.onNext(2);
+		output.assertValues(2, 4);
+		assertEquals(1, processor.getGeneration());
+	}
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.cloud.stream.module.transform.javacompiler.CompilationResult;
+import org.springframework.cloud.stream.module.transform.javacompiler.CompiledClassDefinition;
+import org.springframework.cloud.stream.module.transform.javacompiler.ImportResolver;
+import org.springframework.cloud.stream.module.transform.javacompiler.PrecompiledClasses;
+import org.springframework.cloud.stream.module.transform.javacompiler.RuntimeJavaCompiler;
+
+/**
+ * 
+ * @author agent
+ */
+public class SnippetPrecompilerTests {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Rule
+	public ExpectedException expectedException = ExpectedException.none();
+
+	@Test
+	public void precompile() throws Exception {
+		File snippets = temporaryFolder.newFolder("snippets");
+		File outputDirectory = temporaryFolder.newFolder("classes");
+		String code = "\"return input -> input.map(s->\"\"x\"\"+s);\"";
+		Files.write(new File(snippets, "one").toPath(), (code + "\n").getBytes(StandardCharsets.UTF_8));
+		SnippetPrecompiler.main(new String[] {outputDirectory.getPath(), snippets.getPath()});
+
+		String sourceCode = RxJavaTransformer.makeSourceClassDefinition("return input -> input.map(s->\"x\"+s);");
+		try (URLClassLoader loader = new URLClassLoader(new URL[] {outputDirectory.toURI().toURL()}, null)) {
+			PrecompiledClasses precompiledClasses = new PrecompiledClasses(loader);
+			assertFalse(precompiledClasses.isEmpty());
+			List<CompiledClassDefinition> ccds = precompiledClasses.get(RxJavaTransformer.MAIN_COMPILED_CLASS_NAME, sourceCode);
+			assertNotNull(ccds);
+			assertNull(precompiledClasses.get(RxJavaTransformer.MAIN_COMPILED_CLASS_NAME, sourceCode + " "));
+			CompilationResult compilationResult = new RuntimeJavaCompiler().defineClasses(ccds);
+			assertTrue(compilationResult.wasSuccessful());
+			assertEquals(RxJavaTransformer.MAIN_COMPILED_CLASS_NAME, compilationResult.getCompiledClasses().get(0).getName());
+		}
+	}
+
+	@Test
+	public void precompileWithProperties() throws Exception {
+		File snippet = temporaryFolder.newFile("typed");
+		File outputDirectory = temporaryFolder.newFolder("classes");
+		String code = "return input -> input.map(i->new AtomicInteger(i).incrementAndGet());";
+		Files.write(snippet.toPath(), code.getBytes(StandardCharsets.UTF_8));
+		SnippetPrecompiler.main(new String[] {outputDirectory.getPath(), "--inputType=Integer",
+				"--imports=java.util.concurrent.atomic.*", "--explicitImports=true", snippet.getPath()});
+
+		// The processor builds the source from the properties the same way
+		ProgrammableRxJavaProcessorProperties properties = new ProgrammableRxJavaProcessorProperties();
+		properties.setInputType("Integer");
+		properties.setImports("java.util.concurrent.atomic.*");
+		properties.setExplicitImports(true);
+		String sourceCode = RxJavaTransformer.makeSourceClassDefinition(code, properties,
+				() -> new ImportResolver(getClass().getClassLoader()));
+		assertTrue(sourceCode, sourceCode.contains("import java.util.concurrent.atomic.AtomicInteger;"));
+		try (URLClassLoader loader = new URLClassLoader(new URL[] {outputDirectory.toURI().toURL()}, null)) {
+			PrecompiledClasses precompiledClasses = new PrecompiledClasses(loader);
+			assertNotNull(precompiledClasses.get(RxJavaTransformer.MAIN_COMPILED_CLASS_NAME, sourceCode));
+			assertNull(precompiledClasses.get(RxJavaTransformer.MAIN_COMPILED_CLASS_NAME, RxJavaTransformer.makeSourceClassDefinition(code)));
+		}
+		try (URLClassLoader loader = new URLClassLoader(new URL[] {temporaryFolder.newFolder("empty").toURI().toURL()}, null)) {
+			assertTrue(new PrecompiledClasses(loader).isEmpty());
+		}
+	}
+
+	@Test
+	public void snippetDoesNotCompile() throws Exception {
+		File snippet = temporaryFolder.newFile("broken");
+		Files.write(snippet.toPath(), "return input -> input.mapp(s->s);".getBytes(StandardCharsets.UTF_8));
+		expectedException.expect(IllegalStateException.class);
+		new SnippetPrecompiler().precompile(snippet, temporaryFolder.newFolder("classes"));
+	}
+
+}
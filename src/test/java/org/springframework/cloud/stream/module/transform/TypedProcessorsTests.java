@@ -0,0 +1,112 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.springframework.cloud.stream.annotation.rxjava.RxJavaProcessor;
+import org.springframework.cloud.stream.module.transform.javacompiler.CompilationResult;
+import org.springframework.cloud.stream.module.transform.javacompiler.RuntimeJavaCompiler;
+
+import rx.Observable;
+import rx.functions.Func1;
+
+/**
+ * 
+ * @author agent
+ */
+public class TypedProcessorsTests {
+
+	@Rule
+	public ExpectedException expectedException = ExpectedException.none();
+
+	@Test
+	public void resolveType() throws Exception {
+		ClassLoader classLoader = getClass().getClassLoader();
+		assertSame(Object.class, TypedProcessors.resolveType(null, classLoader));
+		assertSame(Object.class, TypedProcessors.resolveType(" ", classLoader));
+		assertSame(Integer.class, TypedProcessors.resolveType("int", classLoader));
+		assertSame(Integer.class, TypedProcessors.resolveType("Integer", classLoader));
+		assertSame(String.class, TypedProcessors.resolveType(" java.lang.String ", classLoader));
+		assertSame(Date.class, TypedProcessors.resolveType("java.util.Date", classLoader));
+		assertSame(byte[].class, TypedProcessors.resolveType("byte[]", classLoader));
+		expectedException.expect(IllegalArgumentException.class);
+		TypedProcessors.resolveType("Madeup", classLoader);
+	}
+
+	@Test
+	public void converter() throws Exception {
+		Func1<Object,Integer> converter = TypedProcessors.converterFor(Integer.class);
+		Integer i = 42;
+		assertSame(i, converter.call(i));
+		assertEquals(Integer.valueOf(42), converter.call("42"));
+		assertEquals(Integer.valueOf(7), converter.call("07".getBytes(StandardCharsets.UTF_8)));
+		assertEquals(Long.valueOf(3), TypedProcessors.converterFor(Long.class).call(3));
+		assertEquals("abc", TypedProcessors.converterFor(String.class).call("abc".getBytes(StandardCharsets.UTF_8)));
+		byte[] bytes = new byte[] {1, 2};
+		assertSame(bytes, TypedProcessors.converterFor(byte[].class).call(bytes));
+	}
+
+	@Test
+	public void typedSource() throws Exception {
+		String source = RxJavaTransformer.makeSourceClassDefinition("return input -> input.map(i -> i * 2);", Integer.class, Integer.class);
+		assertTrue(source.contains("public RxJavaProcessor<java.lang.Integer,java.lang.Integer> getTypedProcessor()"));
+		// Untyped source is unchanged, so previously compiled or cached code still matches
+		assertEquals(RxJavaTransformer.makeSourceClassDefinition("return input -> input;"),
+				RxJavaTransformer.makeSourceClassDefinition("return input -> input;", Object.class, Object.class));
+		assertFalse(RxJavaTransformer.makeSourceClassDefinition("return input -> input;").contains("TypedProcessors"));
+	}
+
+	@Test
+	public void typedProcessor() throws Exception {
+		RxJavaProcessor<Object,Object> processor = compile("return input -> input.window(3).flatMap(MathObservable::averageInteger).map(avg -> \"avg=\" + avg);",
+				Integer.class, String.class);
+		List<Object> output = processor.process(Observable.<Object>just("1", 2, "3".getBytes(StandardCharsets.UTF_8), "10", "20", "30"))
+				.toList().toBlocking().single();
+		assertEquals(Arrays.asList("avg=2", "avg=20"), output);
+	}
+
+	@Test
+	public void typedOutputOnly() throws Exception {
+		RxJavaProcessor<Object,Object> processor = compile("return input -> input.map(o -> o.toString().length());",
+				Object.class, Integer.class);
+		assertEquals(Arrays.asList(3, 1), processor.process(Observable.<Object>just("abc", 5)).toList().toBlocking().single());
+	}
+
+	private RxJavaProcessor<Object,Object> compile(String code, Class<?> inputType, Class<?> outputType) throws Exception {
+		CompilationResult compilationResult = new RuntimeJavaCompiler().compile(RxJavaTransformer.MAIN_COMPILED_CLASS_NAME,
+				RxJavaTransformer.makeSourceClassDefinition(code, inputType, outputType));
+		assertTrue(compilationResult.getCompilationMessages().toString(), compilationResult.wasSuccessful());
+		for (Class<?> clazz: compilationResult.getCompiledClasses()) {
+			if (clazz.getName().equals(RxJavaTransformer.MAIN_COMPILED_CLASS_NAME)) {
+				return ((ProcessorFactory)clazz.newInstance()).getProcessor();
+			}
+		}
+		throw new IllegalStateException("No processor factory compiled");
+	}
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.cloud.stream.module.transform.WindowAggregates.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.springframework.cloud.stream.annotation.rxjava.RxJavaProcessor;
+import org.springframework.cloud.stream.module.transform.javacompiler.CompilationResult;
+import org.springframework.cloud.stream.module.transform.javacompiler.RuntimeJavaCompiler;
+
+import rx.Observable;
+import rx.observers.TestSubscriber;
+import rx.schedulers.TestScheduler;
+import rx.subjects.PublishSubject;
+
+/**
+ * 
+ * @author agent
+ */
+public class WindowAggregatesTests {
+
+	@Test
+	public void countWindows() throws Exception {
+		Observable<Integer> values = Observable.just(1, 2, 3, 10, 20, 30, 7);
+		assertEquals(Arrays.asList(2d, 20d, 7d), values.compose(windowAverage(3)).toList().toBlocking().single());
+		assertEquals(Arrays.asList(6d, 60d, 7d), values.compose(windowSum(3)).toList().toBlocking().single());
+		assertEquals(Arrays.asList(1d, 10d, 7d), values.compose(windowMin(3)).toList().toBlocking().single());
+		assertEquals(Arrays.asList(3d, 30d, 7d), values.compose(windowMax(3)).toList().toBlocking().single());
+		List<Double> variances = values.compose(windowVariance(3)).toList().toBlocking().single();
+		assertEquals(2d/3, variances.get(0), 1e-9);
+		assertEquals(200d/3, variances.get(1), 1e-9);
+		assertEquals(0d, variances.get(2), 1e-9);
+		WindowStatistics statistics = Observable.just(2.5, 3.5).compose(windowStatistics(2)).toBlocking().single();
+		assertEquals("WindowStatistics(count=2,sum=6.0,min=2.5,max=3.5,average=3.0,variance=0.25)", statistics.toString());
+		assertEquals(0.5, statistics.getStandardDeviation(), 1e-9);
+	}
+
+	@Test
+	public void sameAsMathObservable() throws Exception {
+		Observable<Integer> values = Observable.range(0, 60);
+		List<Integer> expected = values.window(3).flatMap(rx.observables.MathObservable::averageInteger).toList().toBlocking().single();
+		List<Integer> actual = values.compose(windowAverage(3)).map(Double::intValue).toList().toBlocking().single();
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void backpressure() throws Exception {
+		TestSubscriber<Double> subscriber = new TestSubscriber<>(1);
+		Observable.range(0, 100).compose(windowSum(10)).subscribe(subscriber);
+		subscriber.assertValues(45d);
+		subscriber.requestMore(2);
+		subscriber.assertValues(45d, 145d, 245d);
+		subscriber.assertNotCompleted();
+	}
+
+	@Test
+	public void timeWindows() throws Exception {
+		TestScheduler scheduler = new TestScheduler();
+		PublishSubject<Integer> subject = PublishSubject.create();
+		TestSubscriber<WindowStatistics> subscriber = new TestSubscriber<>();
+		subject.compose(windowStatistics(1, TimeUnit.SECONDS, scheduler)).subscribe(subscriber);
+		subject.onNext(4);
+		subject.onNext(8);
+		scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+		// Nothing arrives in the second window
+		scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+		subject.onNext(5);
+		subject.onCompleted();
+		List<WindowStatistics> windows = subscriber.getOnNextEvents();
+		assertEquals(3, windows.size());
+		assertEquals(2, windows.get(0).getCount());
+		assertEquals(6d, windows.get(0).getAverage(), 0d);
+		assertEquals(0, windows.get(1).getCount());
+		assertTrue(Double.isNaN(windows.get(1).getAverage()));
+		assertEquals(5d, windows.get(2).getMax(), 0d);
+		subscriber.assertCompleted();
+		// The window timer stops when the source completes
+		scheduler.advanceTimeBy(5, TimeUnit.SECONDS);
+		assertEquals(3, subscriber.getOnNextEvents().size());
+	}
+
+	@Test
+	public void snippet() throws Exception {
+		String code = "return input -> input.map(s->Integer.valueOf((String)s)).compose(windowAverage(3));";
+		CompilationResult compilationResult = new RuntimeJavaCompiler().compile(RxJavaTransformer.MAIN_COMPILED_CLASS_NAME,
+				RxJavaTransformer.makeSourceClassDefinition(code));
+		assertTrue(compilationResult.getCompilationMessages().toString(), compilationResult.wasSuccessful());
+		RxJavaProcessor<Object,Object> processor = ((ProcessorFactory)compilationResult.getCompiledClasses().get(0).newInstance()).getProcessor();
+		assertEquals(Arrays.asList(2d, 5d), processor.process(Observable.<Object>just("1", "2", "3", "4", "5", "6")).toList().toBlocking().single());
+	}
+
+}
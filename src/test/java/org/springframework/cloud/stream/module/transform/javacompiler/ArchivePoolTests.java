@@ -0,0 +1,94 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform.javacompiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * 
+ * @author agent
+ */
+public class ArchivePoolTests {
+
+	static File NestedJar = new File("target/test-classes/outerjar.jar");
+	static File SimpleJar = new File("target/test-classes/simplejar.jar");
+
+	@Test
+	public void pooling() throws Exception {
+		ArchivePool pool = new ArchivePool(10);
+		MappedArchive simple = pool.getArchive(SimpleJar);
+		assertSame(simple, pool.getArchive(SimpleJar));
+		MappedArchive outer = pool.getArchive(NestedJar);
+		MappedArchive inner = pool.getNestedArchive(NestedJar, outer.findEntry("lib/innerjar.jar"));
+		assertSame(inner, pool.getNestedArchive(NestedJar, outer.findEntry("lib/innerjar.jar")));
+		assertEquals(2, inner.size());
+		assertEquals(3, pool.size());
+		assertEquals(3, pool.getOpenCount());
+		assertEquals(3, pool.getHitCount());
+	}
+
+	@Test
+	public void eviction() throws Exception {
+		ArchivePool pool = new ArchivePool(1);
+		MappedArchive simple = pool.getArchive(SimpleJar);
+		pool.getArchive(NestedJar);
+		assertEquals(1, pool.size());
+		assertEquals(1, pool.getEvictionCount());
+		// Evicted archives are mapped again when next needed
+		assertNotSame(simple, pool.getArchive(SimpleJar));
+		assertEquals(3, pool.getOpenCount());
+	}
+
+	@Test
+	public void concurrentOpens() throws Exception {
+		ArchivePool pool = new ArchivePool(10);
+		int threads = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<MappedArchive>> results = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				results.add(executor.submit((Callable<MappedArchive>) () -> {
+					start.await();
+					return pool.getArchive(SimpleJar);
+				}));
+			}
+			start.countDown();
+			MappedArchive first = results.get(0).get();
+			for (Future<MappedArchive> result: results) {
+				assertSame(first, result.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+		// Archives mapped by threads that lost the race to store them are not counted
+		assertEquals(1, pool.getOpenCount());
+	}
+
+}
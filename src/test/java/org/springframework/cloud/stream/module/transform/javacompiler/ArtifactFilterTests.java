@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform.javacompiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * 
+ * @author agent
+ */
+public class ArtifactFilterTests {
+
+	@Test
+	public void matching() throws Exception {
+		ArtifactFilter filter = ArtifactFilter.parse("rxjava, spring-core,,innerjar");
+		assertTrue(filter.accept("/a/b/rxjava-1.1.0.jar"));
+		assertTrue(filter.accept("lib/rxjava-1.1.0.jar"));
+		assertTrue(filter.accept("spring-core-4.2.5.RELEASE.jar"));
+		assertTrue(filter.accept("lib/innerjar.jar"));
+		assertFalse(filter.accept("lib/rxjava-math-1.0.0.jar"));
+		assertFalse(filter.accept("rxjava.jar.old"));
+		assertFalse(filter.accept("spring-core.jarx"));
+		assertFalse(filter.accept("my-rxjava-1.0.jar"));
+		assertEquals("innerjar,rxjava,spring-core", filter.toString());
+	}
+
+	@Test
+	public void all() throws Exception {
+		assertSame(ArtifactFilter.ALL, ArtifactFilter.parse("rxjava,*"));
+		assertTrue(ArtifactFilter.ALL.accept("anything.jar"));
+		assertEquals("*", ArtifactFilter.ALL.toString());
+	}
+
+	@Test
+	public void equality() throws Exception {
+		assertEquals(ArtifactFilter.parse("a,b"), ArtifactFilter.forArtifacts(Arrays.asList("b", "a")));
+		assertNotEquals(ArtifactFilter.parse("a,b"), ArtifactFilter.parse("a"));
+		assertNotEquals(ArtifactFilter.parse("a"), ArtifactFilter.ALL);
+	}
+
+	@Test
+	public void filteredIndex() throws Exception {
+		String path = ClasspathIndexTests.NestedJarPath + File.pathSeparator + ClasspathIndexTests.SimpleJarPath;
+		// The outer jar is not the jar the application was launched from, so it is filtered on its own name
+		ClasspathIndex index = ClasspathIndex.forClasspath(path, ArtifactFilter.parse("innerjar"));
+		assertEquals(0, index.size());
+		index = ClasspathIndex.forClasspath(path, ArtifactFilter.parse("simplejar"));
+		assertEquals(2, index.size());
+		assertTrue(index.containsPackage("com.foo"));
+		assertEquals(0, countEntries(index.list("", false)));
+		assertEquals(4, ClasspathIndex.forClasspath(path).size());
+	}
+
+	private int countEntries(Iterable<?> iterable) {
+		int count = 0;
+		for (@SuppressWarnings("unused") Object o: iterable) {
+			count++;
+		}
+		return count;
+	}
+
+}
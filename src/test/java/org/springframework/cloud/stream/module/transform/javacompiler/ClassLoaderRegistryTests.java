@@ -0,0 +1,74 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform.javacompiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * 
+ * @author agent
+ */
+public class ClassLoaderRegistryTests {
+
+	@Test
+	public void registerAndRelease() throws Exception {
+		ClassLoaderRegistry registry = new ClassLoaderRegistry();
+		SimpleClassLoader loader = new SimpleClassLoader(getClass().getClassLoader());
+		List<CompiledClassDefinition> ccds = Collections.singletonList(new CompiledClassDefinition("a/b/Foo.class", new byte[] {1,2,3}));
+		long generation = registry.register(loader, ccds, 1024);
+		assertEquals(1, generation);
+		assertEquals(1, registry.getLiveLoaderCount());
+		assertEquals(0, registry.getReleasedLiveLoaderCount());
+		assertEquals(1024, registry.getLiveMetaspaceBytes());
+		ClassLoaderRegistry.Generation liveGeneration = registry.getLiveGenerations().get(0);
+		assertEquals("a.b.Foo", liveGeneration.getName());
+		assertEquals(1, liveGeneration.getClassCount());
+		assertEquals(3, liveGeneration.getByteCount());
+		assertTrue(registry.release(generation));
+		assertFalse(registry.release(generation));
+		assertFalse(registry.release(99));
+		assertEquals(1, registry.getReleasedLiveLoaderCount());
+		assertEquals("ClassLoaderRegistry(live=1,releasedLive=1,unloaded=0,liveMetaspace=1024b)", registry.toString());
+		loader.close();
+	}
+
+	@Test
+	public void unloading() throws Exception {
+		ClassLoaderRegistry registry = new ClassLoaderRegistry();
+		RuntimeJavaCompiler rjc = new RuntimeJavaCompiler();
+		CompilationResult cr = rjc.compile("a.b.c.Foo", "package a.b.c;\npublic class Foo {}\n");
+		List<CompiledClassDefinition> ccds = cr.getCompiledClassDefinitions();
+		SimpleClassLoader loader = new SimpleClassLoader(getClass().getClassLoader());
+		loader.defineClass("a.b.c.Foo", ccds.get(0).getBytes());
+		registry.register(loader, ccds, -1);
+		registry.release(1);
+		loader = null;
+		for (int i = 0; i < 10 && registry.getLiveLoaderCount() != 0; i++) {
+			System.gc();
+			Thread.sleep(50);
+		}
+		assertEquals(0, registry.getLiveLoaderCount());
+		assertEquals(1, registry.getUnloadedCount());
+	}
+
+}
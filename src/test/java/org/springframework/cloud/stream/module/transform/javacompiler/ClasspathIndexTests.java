@@ -0,0 +1,125 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform.javacompiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Iterator;
+
+import javax.tools.JavaFileObject;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/**
+ * 
+ * @author agent
+ */
+public class ClasspathIndexTests {
+
+	static String ThisClassFilename = ClasspathIndexTests.class.getName().replace('.', '/')+".class";
+
+	static String NestedJarPath = "target/test-classes/outerjar.jar";
+	static String SimpleJarPath = "target/test-classes/simplejar.jar";
+	static String TestClassesDir = "target/test-classes";
+
+	@Rule
+	public final ExpectedException exception = ExpectedException.none();
+
+	@Test
+	public void sharing() throws Exception {
+		ClasspathIndex index = ClasspathIndex.forClasspath(SimpleJarPath);
+		assertSame(index, ClasspathIndex.forClasspath(SimpleJarPath));
+		assertEquals(2, index.size());
+		assertEquals(0, ClasspathIndex.forClasspath("made/up/path").size());
+		assertEquals(0, ClasspathIndex.forClasspath(null).size());
+	}
+
+	@Test
+	public void packages() throws Exception {
+		ClasspathIndex index = ClasspathIndex.forClasspath(SimpleJarPath);
+		assertEquals(2, countEntries(index.list(null, false)));
+		assertEquals(2, countEntries(index.list("com", true)));
+		assertEquals(0, countEntries(index.list("com", false)));
+		assertEquals(1, countEntries(index.list("com.foo", false)));
+		assertEquals(1, countEntries(index.list("com.foo", true)));
+		assertEquals(0, countEntries(index.list("com.fo", true)));
+		assertEquals(0, countEntries(index.list("nothere", true)));
+		assertEquals("com/bar/Yyy.class", index.list("com.bar", false).iterator().next().getName());
+	}
+
+	@Test
+	public void containsPackage() throws Exception {
+		ClasspathIndex index = ClasspathIndex.forClasspath(SimpleJarPath);
+		assertTrue(index.containsPackage("com"));
+		assertTrue(index.containsPackage("com.foo"));
+		assertTrue(index.containsPackage(""));
+		assertFalse(index.containsPackage("com.fo"));
+		assertFalse(index.containsPackage("com.foo.Xxx"));
+		assertFalse(ClasspathIndex.forClasspath("made/up/path").containsPackage(""));
+	}
+
+	@Test
+	public void defaultPackage() throws Exception {
+		ClasspathIndex index = ClasspathIndex.forClasspath(NestedJarPath);
+		assertEquals(2, countEntries(index.list("", false)));
+		assertEquals(2, countEntries(index.list("", true)));
+		assertNotNull(find(index.list("", false).iterator(), "Bar.class"));
+	}
+
+	@Test
+	public void jarsAndDirs() throws Exception {
+		ClasspathIndex index = ClasspathIndex.forClasspath(NestedJarPath+File.pathSeparator+TestClassesDir+File.pathSeparator+SimpleJarPath);
+		String thisPackage = ClasspathIndexTests.class.getPackage().getName();
+		assertNotNull(find(index.list(thisPackage, false).iterator(), ThisClassFilename));
+		assertNotNull(find(index.list("org.springframework", true).iterator(), ThisClassFilename));
+		assertNull(find(index.list("org.springframework", false).iterator(), ThisClassFilename));
+		assertNotNull(find(index.list("com", true).iterator(), "com/foo/Xxx.class"));
+		assertNotNull(find(index.list(null, false).iterator(), "Foo.class"));
+
+		// Should not work because it needs to be dotted, not slashed
+		exception.expect(IllegalArgumentException.class);
+		index.list("org/springframework", true);
+	}
+
+	// ---
+
+	private JavaFileObject find(Iterator<JavaFileObject> iterator, String lookingFor) {
+		while (iterator.hasNext()) {
+			JavaFileObject jfo = iterator.next();
+			if (jfo.getName().equals(lookingFor)) {
+				return jfo;
+			}
+		}
+		return null;
+	}
+
+	private int countEntries(Iterable<JavaFileObject> iterable) {
+		int count = 0;
+		for (Iterator<JavaFileObject> iterator = iterable.iterator(); iterator.hasNext(); iterator.next()) {
+			count++;
+		}
+		return count;
+	}
+
+}
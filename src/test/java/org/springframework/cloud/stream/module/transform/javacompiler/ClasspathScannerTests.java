@@ -0,0 +1,113 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform.javacompiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.tools.JavaFileObject;
+
+import org.junit.Test;
+
+/**
+ * 
+ * @author agent
+ */
+public class ClasspathScannerTests {
+
+	static String NestedJarPath = "target/test-classes/outerjar.jar";
+	static String SimpleJarPath = "target/test-classes/simplejar.jar";
+	static String TestClassesDir = "target/test-classes";
+
+	@Test
+	public void sameOrderAsSequentialScan() throws Exception {
+		String classpath = NestedJarPath+File.pathSeparator+TestClassesDir+File.pathSeparator+SimpleJarPath+
+				File.pathSeparator+"made/up/path";
+		List<String> expected = new ArrayList<>();
+		IterableClasspath iterableClasspath = new IterableClasspath(classpath, null, true);
+		for (JavaFileObject jfo: iterableClasspath) {
+			expected.add(jfo.getName());
+		}
+		iterableClasspath.close();
+		assertTrue(expected.contains("Foo.class"));
+		ArchivePool archivePool = new ArchivePool(ArchivePool.DEFAULT_MAXIMUM_SIZE);
+		for (int parallelism = 1; parallelism <= 4; parallelism++) {
+			assertEquals(expected, names(new ClasspathScanner(archivePool, parallelism).scan(classpath)));
+		}
+	}
+
+	@Test
+	public void platformClasspath() throws Exception {
+		String classpath = System.getProperty("sun.boot.class.path");
+		ArchivePool archivePool = new ArchivePool(ArchivePool.DEFAULT_MAXIMUM_SIZE);
+		List<String> sequential = names(new ClasspathScanner(archivePool, 1).scan(classpath));
+		assertTrue(sequential.contains("java/lang/String.class"));
+		assertEquals(sequential, names(new ClasspathScanner(archivePool, 4).scan(classpath)));
+	}
+
+	@Test
+	public void nestedContent() throws Exception {
+		ArchivePool archivePool = new ArchivePool(ArchivePool.DEFAULT_MAXIMUM_SIZE);
+		List<JavaFileObject> classes = new ClasspathScanner(archivePool, 2).scan(NestedJarPath);
+		assertEquals(2, classes.size());
+		assertEquals("hello\n", IterableClasspathTests.readContent(classes.get(0).openInputStream()));
+		assertEquals("world\n", IterableClasspathTests.readContent(classes.get(1).openInputStream()));
+	}
+
+	@Test
+	public void bootJar() throws Exception {
+		ArchivePool archivePool = new ArchivePool(ArchivePool.DEFAULT_MAXIMUM_SIZE);
+		String classpath = NestedJarPath+File.pathSeparator+SimpleJarPath;
+		File bootJar = new File(NestedJarPath);
+		// The boot jar is scanned whatever the filter, the jars nested within it are filtered
+		assertEquals(2, new ClasspathScanner(archivePool, 1, ArtifactFilter.parse("innerjar"), bootJar).scan(classpath).size());
+		assertEquals(2, new ClasspathScanner(archivePool, 1, ArtifactFilter.parse("simplejar"), bootJar).scan(classpath).size());
+		assertEquals(4, new ClasspathScanner(archivePool, 1, ArtifactFilter.parse("innerjar,simplejar"), bootJar).scan(classpath).size());
+		assertEquals(0, new ClasspathScanner(archivePool, 1, ArtifactFilter.parse("innerjar"), null).scan(classpath).size());
+	}
+
+	@Test
+	public void outerJar() throws Exception {
+		assertEquals(new File("/tmp/app.jar"), ClasspathScanner.getOuterJar(new URL("jar:file:/tmp/app.jar!/lib/foo.jar!/")));
+		assertEquals(new File("/tmp/app.jar"), ClasspathScanner.getOuterJar(new URL("jar:file:/tmp/app.jar!/")));
+		assertNull(ClasspathScanner.getOuterJar(new URL("file:/tmp/classes/")));
+		assertNull(ClasspathScanner.getOuterJar(null));
+		// Tests are not run from a spring boot jar
+		assertNull(ClasspathScanner.getLaunchedBootJar());
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void invalidParallelism() throws Exception {
+		new ClasspathScanner(ArchivePool.getSharedPool(), 0);
+	}
+
+	// ---
+
+	private List<String> names(List<JavaFileObject> classes) {
+		List<String> names = new ArrayList<>();
+		for (JavaFileObject jfo: classes) {
+			names.add(jfo.getName());
+		}
+		return names;
+	}
+
+}
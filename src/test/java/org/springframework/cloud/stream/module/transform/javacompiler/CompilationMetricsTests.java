@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform.javacompiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * 
+ * @author agent
+ */
+public class CompilationMetricsTests {
+
+	@Test
+	public void timers() throws Exception {
+		CompilationMetrics metrics = new CompilationMetrics();
+		MemoryBasedJavaFileManager fileManager = new MemoryBasedJavaFileManager().forCompilation();
+		metrics.recordCompilation(true, millis(30), fileManager);
+		metrics.recordCompilation(false, millis(50), fileManager);
+		metrics.recordDefinition(Arrays.asList(new CompiledClassDefinition("a/b/Foo.class", new byte[100]),
+				new CompiledClassDefinition("a/b/Foo$1.class", new byte[20])), millis(2));
+		assertEquals(2, metrics.getCompileTimer().getCount());
+		assertEquals(80, metrics.getCompileTimer().getTotalTime(TimeUnit.MILLISECONDS));
+		assertEquals(50, metrics.getCompileTimer().getMax(TimeUnit.MILLISECONDS));
+		Map<String, Number> meters = metrics.getMeters();
+		assertEquals(1L, meters.get("compiler.compile.failed"));
+		assertEquals(1L, meters.get("compiler.define.count"));
+		assertEquals(2L, meters.get("compiler.define.classes"));
+		assertEquals(120L, meters.get("compiler.define.bytes"));
+	}
+
+	@Test
+	public void compilation() throws Exception {
+		RuntimeJavaCompiler rjc = new RuntimeJavaCompiler();
+		Map<String, Number> before = rjc.getCompilationMetrics().getMeters();
+		CompilationResult cr = rjc.compile("a.b.c.Metrics",
+				"package a.b.c;\n"+
+				"import java.util.*;\n"+
+				"public class Metrics {\n"+
+				"  List<String> l = new ArrayList<>();\n"+
+				"  Runnable r = new Runnable() { public void run() {} };\n"+
+				"}");
+		assertTrue(cr.wasSuccessful());
+		Map<String, Number> after = rjc.getCompilationMetrics().getMeters();
+		// Metrics are shared, other compilations may be happening
+		assertTrue(increase(before, after, "compiler.compile.count") >= 1);
+		assertTrue(increase(before, after, "compiler.list.platformClasspath.count") > 0);
+		assertTrue(increase(before, after, "compiler.list.platformClasspath.files") > 0);
+		assertTrue(increase(before, after, "compiler.list.classpath.count") > 0);
+		assertTrue(increase(before, after, "compiler.define.classes") >= 2);
+		assertTrue(increase(before, after, "compiler.define.bytes") > 0);
+	}
+
+	private static long increase(Map<String, Number> before, Map<String, Number> after, String name) {
+		return after.get(name).longValue() - before.get(name).longValue();
+	}
+
+	private static long millis(long millis) {
+		return TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+
+}
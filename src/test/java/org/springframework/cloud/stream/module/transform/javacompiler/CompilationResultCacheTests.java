@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform.javacompiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * 
+ * @author agent
+ */
+public class CompilationResultCacheTests {
+
+	@Test
+	public void hitsAndMisses() throws Exception {
+		CompilationResultCache cache = new CompilationResultCache();
+		CompilationResult cr = new CompilationResult(true);
+		assertNull(cache.get("Foo", "class Foo {}"));
+		cache.put("Foo", "class Foo {}", cr);
+		assertSame(cr, cache.get("Foo", "class Foo {}"));
+		assertNull(cache.get("Foo", "class Foo { }"));
+		assertNull(cache.get("Bar", "class Foo {}"));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(3, cache.getMissCount());
+	}
+
+	@Test
+	public void sizeEviction() throws Exception {
+		CompilationResultCache cache = new CompilationResultCache(2, CompilationResultCache.DEFAULT_MAXIMUM_AGE_MILLIS);
+		cache.put("A", "a", new CompilationResult(true));
+		cache.put("B", "b", new CompilationResult(true));
+		cache.get("A", "a"); // B is now the least recently used
+		cache.put("C", "c", new CompilationResult(false));
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+		assertNull(cache.get("B", "b"));
+		assertFalse(cache.get("C", "c").wasSuccessful());
+	}
+
+	@Test
+	public void ageEviction() throws Exception {
+		CompilationResultCache cache = new CompilationResultCache(10, 1);
+		cache.put("A", "a", new CompilationResult(true));
+		Thread.sleep(10);
+		assertNull(cache.get("A", "a"));
+		assertEquals(0, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+	}
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform.javacompiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * 
+ * @author agent
+ */
+public class CompilationStatisticsTests {
+
+	@Test
+	public void coldThenWarm() throws Exception {
+		CompilationStatistics statistics = new CompilationStatistics();
+		assertEquals(-1, statistics.getColdCompileNanos("javac"));
+		assertEquals(-1, statistics.getMeanWarmCompileNanos("javac"));
+		assertTrue(statistics.recordCompilation("javac", millis(800)));
+		assertEquals(0, statistics.getWarmCompileCount("javac"));
+		assertFalse(statistics.recordCompilation("javac", millis(30)));
+		assertFalse(statistics.recordCompilation("javac", millis(50)));
+		assertEquals(millis(800), statistics.getColdCompileNanos("javac"));
+		assertEquals(2, statistics.getWarmCompileCount("javac"));
+		assertEquals(millis(40), statistics.getMeanWarmCompileNanos("javac"));
+		assertEquals("CompilationStatistics(javac:cold=800ms,warm=2[mean=40ms,min=30ms,max=50ms])", statistics.toString());
+	}
+
+	@Test
+	public void perBackend() throws Exception {
+		CompilationStatistics statistics = new CompilationStatistics();
+		assertTrue(statistics.recordCompilation("javac", millis(800)));
+		assertTrue(statistics.recordCompilation("ecj", millis(600)));
+		assertFalse(statistics.recordCompilation("ecj", millis(20)));
+		assertEquals("CompilationStatistics(javac:cold=800ms,warm=0,ecj:cold=600ms,warm=1[mean=20ms,min=20ms,max=20ms])", statistics.toString());
+		statistics.clear();
+		assertEquals(-1, statistics.getColdCompileNanos("ecj"));
+	}
+
+	private static long millis(long millis) {
+		return TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform.javacompiler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * 
+ * @author agent
+ */
+public class CompiledClassCacheTests {
+
+	static String FooSource = 
+			"package a.b.c;\n"+
+			"public class Foo {\n"+
+			"  public String toString() { return \"foo\"; }\n"+
+			"}";
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void keys() throws Exception {
+		CompiledClassCache cache = new CompiledClassCache(temporaryFolder.getRoot());
+		assertEquals(cache.getKey("a.b.c.Foo", FooSource),cache.getKey("a.b.c.Foo", FooSource));
+		assertNotEquals(cache.getKey("a.b.c.Foo", FooSource),cache.getKey("a.b.c.Foo", FooSource+" "));
+		assertNotEquals(cache.getKey("a.b.c.Foo", FooSource),cache.getKey("a.b.c.Bar", FooSource));
+	}
+
+	@Test
+	public void roundTrip() throws Exception {
+		File cacheDir = new File(temporaryFolder.getRoot(),"cache");
+		CompiledClassCache cache = new CompiledClassCache(cacheDir);
+		String key = cache.getKey("a.b.c.Foo", FooSource);
+		assertNull(cache.get(key));
+
+		RuntimeJavaCompiler rjc = new RuntimeJavaCompiler();
+		CompilationResult cr = rjc.compile("a.b.c.Foo", FooSource);
+		assertTrue(cr.wasSuccessful());
+		cache.put(key, cr.getCompiledClassDefinitions());
+		assertTrue(cacheDir.isDirectory());
+
+		// A new cache instance over the same directory simulates a restart
+		List<CompiledClassDefinition> ccds = new CompiledClassCache(cacheDir).get(key);
+		assertEquals(1,ccds.size());
+		assertEquals("a.b.c.Foo",ccds.get(0).getClassName());
+		assertArrayEquals(cr.getCompiledClassDefinitions().get(0).getBytes(),ccds.get(0).getBytes());
+
+		CompilationResult loaded = rjc.defineClasses(ccds);
+		assertTrue(loaded.wasSuccessful());
+		assertEquals("foo",loaded.getCompiledClasses().get(0).newInstance().toString());
+	}
+
+	@Test
+	public void corruptEntriesIgnored() throws Exception {
+		CompiledClassCache cache = new CompiledClassCache(temporaryFolder.getRoot());
+		String key = cache.getKey("a.b.c.Foo", FooSource);
+		try (FileOutputStream fos = new FileOutputStream(new File(temporaryFolder.getRoot(),key+".ccd"))) {
+			fos.write("garbage".getBytes());
+		}
+		assertNull(cache.get(key));
+	}
+
+}
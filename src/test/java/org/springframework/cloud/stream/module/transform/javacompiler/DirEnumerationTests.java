@@ -85,8 +85,43 @@ public class DirEnumerationTests {
 		e.getName(File.createTempFile("tmp",null));
 	}
 	
+	@Test
+	public void packageDirectory() throws Exception {
+		String thisPackage = DirEnumerationTests.class.getPackage().getName();
+		DirEnumeration e = new DirEnumeration(new File("target/test-classes"), thisPackage, false);
+		File foo = find(e,FooClassFilename);
+		assertEquals(Foo.class.getName().replace('.', '/')+".class",e.getName(foo));
+		e.close();
+		assertFalse(e.hasMoreElements());
+		// Without subpackages nothing is found in the parent package directories
+		e = new DirEnumeration(new File("target/test-classes"), "org.springframework", false);
+		assertFalse(e.hasMoreElements());
+		e = new DirEnumeration(new File("target/test-classes"), "org.springframework", true);
+		assertEquals(FooClassFilename,find(e,FooClassFilename).getName());
+		e.close();
+		e = new DirEnumeration(new File("target/test-classes"), "made.up", true);
+		assertFalse(e.hasMoreElements());
+	}
+
+	@Test
+	public void eachFileOnce() throws Exception {
+		int count = 0;
+		int fooCount = 0;
+		try (DirEnumeration e = new DirEnumeration(new File("target/test-classes"))) {
+			while (e.hasMoreElements()) {
+				File nextFile = e.nextElement();
+				count++;
+				if (nextFile.getName().equals(FooClassFilename)) {
+					fooCount++;
+				}
+			}
+		}
+		assertEquals(1,fooCount);
+		assertTrue(count > 1);
+	}
+
 	// ---
-	
+
 	private File find(DirEnumeration e, String name) {
 		while (e.hasMoreElements()) {
 			File nextFile = e.nextElement();
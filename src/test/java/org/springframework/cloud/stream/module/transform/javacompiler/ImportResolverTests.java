@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform.javacompiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.cloud.stream.module.transform.RxJavaTransformer;
+
+/**
+ * 
+ * @author agent
+ */
+public class ImportResolverTests {
+
+	private ImportResolver resolver = new ImportResolver(ImportResolverTests.class.getClassLoader());
+
+	@Test
+	public void onDemandImports() throws Exception {
+		List<String> imports = Arrays.asList("java.util.*", "rx.observables.MathObservable", "static rx.observables.MathObservable.*");
+		List<String> resolved = resolver.resolve(imports, "a.b", "List<String> l = new ArrayList<>(); Object o = sumInteger(x); MathObservable m; Map.Entry e;");
+		assertEquals(Arrays.asList("rx.observables.MathObservable", "java.util.ArrayList", "java.util.List", "java.util.Map",
+				"static rx.observables.MathObservable.sumInteger"), resolved);
+	}
+
+	@Test
+	public void shadowedNames() throws Exception {
+		// Types in the package being compiled and single-type imports take precedence over on-demand imports
+		assertEquals(Collections.emptyList(), resolver.resolve(Arrays.asList("java.util.*"), "java.sql", "Date d;"));
+		assertEquals(Arrays.asList("java.sql.Date"), resolver.resolve(Arrays.asList("java.sql.Date", "java.util.*"), "a.b", "Date d;"));
+		// Package private types are not imported on demand
+		assertEquals(Collections.emptyList(), resolver.resolve(Arrays.asList("java.util.*"), "a.b", "JumboEnumSet s;"));
+	}
+
+	@Test
+	public void ambiguousNames() throws Exception {
+		List<String> imports = Arrays.asList("java.util.*", "java.awt.*");
+		assertTrue(imports == resolver.resolve(imports, "a.b", "List l;"));
+		assertEquals(Arrays.asList("java.util.HashMap"), resolver.resolve(imports, "a.b", "HashMap l;"));
+	}
+
+	@Test
+	public void memberTypesOnDemand() throws Exception {
+		assertEquals(Arrays.asList("java.util.Map.Entry"), resolver.resolve(Arrays.asList("java.util.Map.*"), "a.b", "Entry<String,String> e;"));
+		// Member types of member types
+		assertEquals(Arrays.asList("java.lang.Character.UnicodeScript"),
+				resolver.resolve(Arrays.asList("java.lang.Character.*"), "a.b", "UnicodeScript u;"));
+		// Neither a package nor a class, left for the compiler to report
+		assertEquals(Arrays.asList("com.madeup.*"), resolver.resolve(Arrays.asList("com.madeup.*"), "a.b", "Foo f;"));
+	}
+
+	@Test
+	public void staticMemberTypes() throws Exception {
+		assertEquals(Arrays.asList("static java.util.AbstractMap.SimpleEntry"),
+				resolver.resolve(Arrays.asList("static java.util.AbstractMap.*"), "a.b", "SimpleEntry<String,String> e;"));
+		assertEquals(Arrays.asList("static java.util.Map.Entry"),
+				resolver.resolve(Arrays.asList("static java.util.Map.*"), "a.b", "Entry<String,String> e;"));
+	}
+
+	@Test
+	public void commentsAndLiterals() throws Exception {
+		String code = "String s = \"List \\\" Set\"; // Map\n/* Vector */ char c = '\\''; char d = 'x'; ArrayList a;";
+		assertEquals(Arrays.asList("java.util.ArrayList"), resolver.resolve(Arrays.asList("java.util.*"), "a.b", code));
+		assertEquals("String s =  ;  \n  char c =  ; char d =  ; ArrayList a;", ImportResolver.stripCommentsAndLiterals(code));
+	}
+
+	@Test
+	public void compileWithMemberTypeImports() throws Exception {
+		String code = "return input -> input.map(s -> { Entry<Object,Object> e = new SimpleEntry<>(s, s); return e.getKey(); });";
+		List<String> imports = Arrays.asList("java.util.Map.*", "static java.util.AbstractMap.*",
+				"org.springframework.cloud.stream.annotation.rxjava.*");
+		String template = RxJavaTransformer.makeSourceClassDefinition(code, Collections.<String>emptyList());
+		List<String> resolved = resolver.resolve(imports, "org.springframework.cloud.stream.module.transform", template);
+		assertEquals(Arrays.asList("java.util.Map.Entry", "org.springframework.cloud.stream.annotation.rxjava.RxJavaProcessor",
+				"static java.util.AbstractMap.SimpleEntry"), resolved);
+		CompilationResult compilationResult = new RuntimeJavaCompiler().compile("org.springframework.cloud.stream.module.transform.RxClass",
+				RxJavaTransformer.makeSourceClassDefinition(code, resolved));
+		assertTrue(compilationResult.getCompilationMessages().toString(), compilationResult.wasSuccessful());
+	}
+
+	@Test
+	public void compileWithResolvedImports() throws Exception {
+		String code = "return input -> input.map(s->Integer.valueOf(s.toString())).buffer(5).map(list->new ArrayList<>(list).get(0))" +
+				".window(3).flatMap(MathObservable::averageInteger);";
+		List<String> imports = Arrays.asList("java.util.*", "rx.observables.MathObservable", "static rx.observables.MathObservable.*",
+				"org.springframework.cloud.stream.annotation.rxjava.*");
+		String template = RxJavaTransformer.makeSourceClassDefinition(code, Collections.<String>emptyList());
+		List<String> resolved = resolver.resolve(imports, "org.springframework.cloud.stream.module.transform", template);
+		assertEquals(Arrays.asList("rx.observables.MathObservable", "java.util.ArrayList",
+				"org.springframework.cloud.stream.annotation.rxjava.RxJavaProcessor",
+				"static rx.observables.MathObservable.averageInteger"), resolved);
+		CompilationResult compilationResult = new RuntimeJavaCompiler().compile("org.springframework.cloud.stream.module.transform.RxClass",
+				RxJavaTransformer.makeSourceClassDefinition(code, resolved));
+		assertTrue(compilationResult.getCompilationMessages().toString(), compilationResult.wasSuccessful());
+	}
+
+}
@@ -219,6 +219,22 @@ public class IterableClasspathTests {
 		assertNotEquals(barJfo,fooJfo);
 	}
 	
+	@Test
+	public void nestedJarRandomAccess() throws Exception {
+		IterableClasspath icp = new IterableClasspath(NestedJarPath, null, false);
+		JavaFileObject barJfo = find(icp.iterator(),"Bar.class");
+		JavaFileObject fooJfo = find(icp.iterator(),"Foo.class");
+		// Entries can be read in any order, any number of times
+		for (int i = 0; i < 3; i++) {
+			assertEquals("world\n", readContent(barJfo.openInputStream()));
+			assertEquals("hello\n", readContent(fooJfo.openInputStream()));
+		}
+		icp.close();
+		// Mapped content remains readable for as long as the file object is referenced
+		assertEquals("world\n", readContent(barJfo.openInputStream()));
+		icp.close();
+	}
+
 	@Test
 	public void jarsAndDirs() throws Exception {
 		IterableClasspath icp = new IterableClasspath(NestedJarPath+File.pathSeparator+TestClassesDir+File.pathSeparator+SimpleJarPath, null, false);
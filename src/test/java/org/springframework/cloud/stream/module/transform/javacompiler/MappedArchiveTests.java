@@ -0,0 +1,155 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform.javacompiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Verify the MappedArchive sees the same entries and content as java.util.zip.ZipFile.
+ * 
+ * @author agent
+ */
+public class MappedArchiveTests {
+
+	static String NestedJarPath = "target/test-classes/outerjar.jar";
+	static String SimpleJarPath = "target/test-classes/simplejar.jar";
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void simpleJar() throws Exception {
+		MappedArchive archive = MappedArchive.open(new File(SimpleJarPath));
+		int xxx = archive.findEntry("com/foo/Xxx.class");
+		assertTrue(xxx != -1);
+		assertEquals("com/foo/Xxx.class", archive.getEntryName(xxx));
+		assertTrue(archive.entryNameStartsWith(xxx, "com/"));
+		assertFalse(archive.entryNameStartsWith(xxx, "org/"));
+		assertTrue(archive.entryNameEndsWith(xxx, ".class"));
+		assertFalse(archive.entryNameEndsWith(xxx, ".jar"));
+		assertEquals("fake\n", IterableClasspathTests.readContent(archive.getInputStream(xxx)));
+		assertEquals(-1, archive.findEntry("com/foo/Zzz.class"));
+		verifySameAsZipFile(new File(SimpleJarPath));
+	}
+
+	@Test
+	public void nestedJar() throws Exception {
+		MappedArchive outer = MappedArchive.open(new File(NestedJarPath));
+		int inner = outer.findEntry("lib/innerjar.jar");
+		MappedArchive nested = MappedArchive.open("innerjar.jar", outer.getContent(inner));
+		assertEquals(2, nested.size());
+		assertEquals("world\n", IterableClasspathTests.readContent(nested.getInputStream(nested.findEntry("Bar.class"))));
+		assertEquals("hello\n", IterableClasspathTests.readContent(nested.getInputStream(nested.findEntry("Foo.class"))));
+	}
+
+	@Test
+	public void storedAndDeflatedEntries() throws Exception {
+		File zip = temporaryFolder.newFile("test.zip");
+		try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zip))) {
+			for (int i = 0; i < 50; i++) {
+				zos.setMethod(i % 2 == 0 ? ZipOutputStream.DEFLATED : ZipOutputStream.STORED);
+				ZipEntry ze = new ZipEntry("a/b/C" + i + ".class");
+				byte[] content = makeContent(i);
+				if (i % 2 == 1) {
+					CRC32 crc = new CRC32();
+					crc.update(content);
+					ze.setSize(content.length);
+					ze.setCrc(crc.getValue());
+				}
+				zos.putNextEntry(ze);
+				zos.write(content);
+				zos.closeEntry();
+			}
+		}
+		verifySameAsZipFile(zip);
+		MappedArchive archive = MappedArchive.open(zip);
+		int entry = archive.findEntry("a/b/C7.class");
+		assertEquals(makeContent(7).length, archive.getSize(entry));
+		assertEquals(makeContent(7).length, archive.getContent(entry).remaining());
+	}
+
+	@Test
+	public void zip64WithPrependedData() throws Exception {
+		// More than 0xffff entries makes ZipOutputStream write the zip64 end records
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (ZipOutputStream zos = new ZipOutputStream(baos)) {
+			for (int i = 0; i < 0x10000 + 10; i++) {
+				zos.putNextEntry(new ZipEntry("C" + i + ".class"));
+				zos.write(("content" + i).getBytes(StandardCharsets.UTF_8));
+				zos.closeEntry();
+			}
+		}
+		byte[] zip = baos.toByteArray();
+		// As for a spring boot jar with a launch script
+		byte[] prefix = "#!/bin/bash\necho launch script\nexit 0\n".getBytes(StandardCharsets.UTF_8);
+		ByteBuffer prefixed = ByteBuffer.allocate(prefix.length + zip.length).put(prefix).put(zip);
+		prefixed.flip();
+		for (ByteBuffer content: new ByteBuffer[] {ByteBuffer.wrap(zip), prefixed}) {
+			MappedArchive archive = MappedArchive.open("zip64.jar", content);
+			assertEquals(0x10000 + 10, archive.size());
+			int entry = archive.findEntry("C65540.class");
+			assertEquals("content65540", IterableClasspathTests.readContent(archive.getInputStream(entry)));
+		}
+	}
+
+	// ---
+
+	private byte[] makeContent(int i) {
+		StringBuilder s = new StringBuilder();
+		for (int j = 0; j < i * 100; j++) {
+			s.append("content").append(j);
+		}
+		return s.toString().getBytes();
+	}
+
+	private void verifySameAsZipFile(File file) throws Exception {
+		MappedArchive archive = MappedArchive.open(file);
+		try (ZipFile zipFile = new ZipFile(file)) {
+			assertEquals(zipFile.size(), archive.size());
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry ze = entries.nextElement();
+				int entry = archive.findEntry(ze.getName());
+				assertTrue(entry != -1);
+				assertEquals(ze.getTime(), archive.getTime(entry));
+				if (!ze.isDirectory()) {
+					try (InputStream expected = zipFile.getInputStream(ze); InputStream actual = archive.getInputStream(entry)) {
+						assertEquals(IterableClasspathTests.readContent(expected), IterableClasspathTests.readContent(actual));
+					}
+				}
+			}
+		}
+	}
+
+}
@@ -121,6 +121,21 @@ public class MemoryBasedJavaFileManagerTests {
 		assertNotNull(find(iterable.iterator(),ThisClassFilename));		
 	}
 	
+	@Test
+	public void forCompilation() throws Exception {
+		MemoryBasedJavaFileManager compilationJfm = jfm.forCompilation();
+		JavaFileObject jfo = find(compilationJfm.list(StandardLocation.CLASS_PATH, null, null, true).iterator(),ThisClassFilename);
+		assertNotNull(jfo);
+		// The classpath state is shared, so the same file objects are returned
+		assertTrue(jfo == find(jfm.list(StandardLocation.CLASS_PATH, null, null, true).iterator(),ThisClassFilename));
+		// But output is collected separately
+		compilationJfm.getJavaFileForOutput(StandardLocation.CLASS_OUTPUT, "Foo", Kind.CLASS, null).openOutputStream().close();
+		assertEquals(1,compilationJfm.getCompiledClasses().size());
+		assertEquals(0,jfm.getCompiledClasses().size());
+		assertEquals(0,compilationJfm.forCompilation().getCompiledClasses().size());
+		compilationJfm.close();
+	}
+
 	@Test
 	public void inferBinaryName() throws Exception {
 		Iterable<JavaFileObject> iterable = jfm.list(StandardLocation.CLASS_PATH, null, null, true);
@@ -269,6 +284,24 @@ public class MemoryBasedJavaFileManagerTests {
 		assertEquals("OutputJavaFileObject: Location=CLASS_OUTPUT,className=Foo,kind=CLASS,relativeName=null,sibling=OutputJavaFileObject: Location=SOURCE_PATH,className=Foo.java,kind=SOURCE,relativeName=null,sibling=null,packageName=null,packageName=null",jfo.toString());
 	}
 
+	@Test
+	public void missingPackagesAvoidLookup() throws Exception {
+		MemoryBasedJavaFileManager compilationFileManager = jfm.forCompilation();
+		Iterable<JavaFileObject> iterable = compilationFileManager.list(StandardLocation.CLASS_PATH, "java.util.rx", null, false);
+		assertTrue(iterable == EmptyIterable.instance);
+		iterable = compilationFileManager.list(StandardLocation.PLATFORM_CLASS_PATH, "java.util.rx", null, true);
+		assertTrue(iterable == EmptyIterable.instance);
+		assertEquals(2, jfm.getPackageListCount());
+		assertEquals(2, jfm.getAvoidedPackageListCount());
+		// Parent packages of ones containing classes exist even if they contain no classes themselves
+		iterable = compilationFileManager.list(StandardLocation.CLASS_PATH, "org.springframework.cloud", null, false);
+		assertFalse(iterable == EmptyIterable.instance);
+		iterable = compilationFileManager.list(StandardLocation.PLATFORM_CLASS_PATH, "java.util", null, false);
+		assertNotNull(find(iterable.iterator(), "java/util/List.class"));
+		assertEquals(4, compilationFileManager.getPackageListCount());
+		assertEquals(2, compilationFileManager.getAvoidedPackageListCount());
+	}
+
 	@Test
 	public void equals() throws Exception {
 		Iterable<JavaFileObject> iterable = jfm.list(StandardLocation.CLASS_PATH, null, null, true);
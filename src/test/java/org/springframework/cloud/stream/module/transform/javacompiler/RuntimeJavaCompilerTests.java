@@ -18,6 +18,7 @@ package org.springframework.cloud.stream.module.transform.javacompiler;
 import java.io.PrintStream;
 import java.lang.reflect.Method;
 import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
 
 import javax.tools.JavaFileObject.Kind;
 
@@ -104,6 +105,145 @@ public class RuntimeJavaCompilerTests {
                 "==========\n", cr.getCompilationMessages().get(0).toString());
 	}
 	
+	@Test
+	public void cachedCompile() throws Exception {
+		RuntimeJavaCompiler rjc = new RuntimeJavaCompiler();
+		String source = 
+				"package a.b.c;\n"+
+				"public class Foo {\n"+
+				"}";
+		CompilationResult cr = rjc.compile("a.b.c.Foo",source);
+		Assert.assertTrue(cr.wasSuccessful());
+		assertSame(cr,rjc.compile("a.b.c.Foo",source));
+		assertEquals(1,rjc.getCompilationResultCache().getHitCount());
+		rjc.setCompilationResultCache(null);
+		assertNotSame(cr,rjc.compile("a.b.c.Foo",source));
+	}
+
+	@Test
+	public void releaseCompilationResult() throws Exception {
+		RuntimeJavaCompiler rjc = new RuntimeJavaCompiler();
+		String source =
+				"package a.b.c;\n"+
+				"public class Foo {\n"+
+				"}";
+		CompilationResult cr = rjc.compile("a.b.c.Foo",source);
+		Assert.assertTrue(cr.wasSuccessful());
+		assertEquals(1,cr.getClassLoaderGeneration());
+		assertEquals(1,rjc.getClassLoaderRegistry().getLiveLoaderCount());
+		rjc.release(cr);
+		assertEquals(1,rjc.getClassLoaderRegistry().getReleasedLiveLoaderCount());
+		// No longer cached, so a new generation is defined
+		CompilationResult cr2 = rjc.compile("a.b.c.Foo",source);
+		assertNotSame(cr,cr2);
+		assertEquals(2,cr2.getClassLoaderGeneration());
+		assertEquals(1,rjc.getCompilationResultCache().size());
+	}
+
+	@Test
+	public void artifactFilter() throws Exception {
+		RuntimeJavaCompiler rjc = new RuntimeJavaCompiler();
+		String source =
+				"package a.b.c;\n"+
+				"public class Foo {\n"+
+				"  org.junit.Assert a;\n"+
+				"  rx.Observable<String> o;\n"+
+				"}";
+		assertTrue(rjc.compile("a.b.c.Foo",source).wasSuccessful());
+		rjc.setArtifactFilter(ArtifactFilter.parse("rxjava"));
+		assertEquals(0,rjc.getCompilationResultCache().size());
+		CompilationResult cr = rjc.compile("a.b.c.Foo",source);
+		assertFalse(cr.wasSuccessful());
+		assertTrue(cr.getCompilationMessages().get(0).getMessage().contains("org.junit"));
+		rjc.setArtifactFilter(ArtifactFilter.parse("rxjava,junit"));
+		assertTrue(rjc.compile("a.b.c.Foo",source).wasSuccessful());
+	}
+
+	@Test
+	public void ecjCompile() throws Exception {
+		RuntimeJavaCompiler rjc = new RuntimeJavaCompiler();
+		rjc.setCompilerBackend(new EcjCompilerBackend());
+		assertEquals("ecj",rjc.getCompilerBackend().getName());
+		CompilationResult cr = rjc.compile("a.b.c.Foo",
+				"package a.b.c;\n"+
+				"public class Foo {\n"+
+				"  public static void main(String[] argv) {\n"+
+				"    System.out.println(\"hello world\");\n"+
+				"  }\n"+
+				"}");
+		Assert.assertTrue(cr.wasSuccessful());
+		String output = captureOutputDuringRunOfMainMethod(cr.getCompiledClasses().get(0));
+		Assert.assertEquals("hello world\n",output);
+	}
+
+	@Test
+	public void ecjCompileError() throws Exception {
+		RuntimeJavaCompiler rjc = new RuntimeJavaCompiler();
+		rjc.setCompilerBackend(RuntimeJavaCompiler.createCompilerBackend("ecj"));
+		String source = 
+				"package a.b.c;\n"+
+				"public class Foo {\n"+
+				"  public static void main(Strin[] argv) {\n"+
+				"    System.out.println(\"hello world\");\n"+
+				"  }\n"+
+				"}";
+		CompilationResult cr = rjc.compile("a.b.c.Foo",source);
+		Assert.assertFalse(cr.wasSuccessful());
+		CompilationMessage compilationMessage = cr.getCompilationMessages().get(0);
+		Assert.assertEquals(
+				"==========\n"+
+				"  public static void main(Strin[] argv) {\n"+
+                "                          ^^^^^\n"+
+                "ERROR:Strin cannot be resolved to a type\n"+
+                "==========\n", compilationMessage.toString());
+		assertEquals(60,compilationMessage.getStartPosition());
+		assertEquals(65,compilationMessage.getEndPosition());
+		assertEquals(CompilationMessage.Kind.ERROR,compilationMessage.getKind());
+	}
+
+	@Test
+	public void changingBackendClearsCache() throws Exception {
+		RuntimeJavaCompiler rjc = new RuntimeJavaCompiler();
+		String source = 
+				"package a.b.c;\n"+
+				"public class Foo {\n"+
+				"}";
+		CompilationResult cr = rjc.compile("a.b.c.Foo",source);
+		assertEquals(1,rjc.getCompilationResultCache().size());
+		rjc.setCompilerBackend(new EcjCompilerBackend());
+		assertEquals(0,rjc.getCompilationResultCache().size());
+		assertNotSame(cr,rjc.compile("a.b.c.Foo",source));
+	}
+
+	@Test
+	public void asyncCompile() throws Exception {
+		RuntimeJavaCompiler rjc = new RuntimeJavaCompiler();
+		CompletableFuture<CompilationResult> future = rjc.compileAsync("a.b.c.Foo",
+				"package a.b.c;\n"+
+				"public class Foo {\n"+
+				"}");
+		CompilationResult cr = future.get();
+		Assert.assertTrue(cr.wasSuccessful());
+		assertEquals("a.b.c.Foo",cr.getCompiledClasses().get(0).getName());
+	}
+
+	@Test
+	public void warmUp() throws Exception {
+		RuntimeJavaCompiler rjc = new RuntimeJavaCompiler();
+		rjc.warmUpInBackground().join();
+		assertTrue(rjc.getCompilationStatistics().getColdCompileNanos("javac") > 0);
+		rjc.setCompilerBackend(new EcjCompilerBackend());
+		assertTrue(rjc.warmUp());
+		assertTrue(rjc.getCompilationStatistics().getColdCompileNanos("ecj") > 0);
+		// Warming up does not cache or define anything
+		assertEquals(0,rjc.getCompilationResultCache().size());
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void unknownBackend() throws Exception {
+		RuntimeJavaCompiler.createCompilerBackend("jikes");
+	}
+
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	@Test
 	public void realTemplate() throws Exception {
@@ -143,6 +283,24 @@ public class RuntimeJavaCompilerTests {
 		Assert.assertEquals(4, resultElement); // average of second 3
 	}
 	
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	@Test
+	public void realTemplateWithEcj() throws Exception {
+		RuntimeJavaCompiler rjc = new RuntimeJavaCompiler();
+		rjc.setCompilerBackend(new EcjCompilerBackend());
+		String insert = "return input -> input.map(s->Integer.valueOf((String)s)).window(3).flatMap(MathObservable::averageInteger);";
+		String source = RxJavaTransformer.makeSourceClassDefinition(insert);
+		CompilationResult cr = rjc.compile("org.springframework.cloud.stream.module.transform.RxClass", source );
+		if (!cr.wasSuccessful()) {
+			Assert.fail("Compilation does not appear to have worked:\n"+cr.toString());
+		}
+		RxJavaProcessor rjp = invokeGetProcessor(cr.getCompiledClasses().get(0));
+		Observable<String> strings = Observable.from(new String[]{"2","4","9","1","4","7"});
+		Iterator bo = rjp.process(strings).toBlocking().toIterable().iterator();
+		Assert.assertEquals(5, bo.next());
+		Assert.assertEquals(4, bo.next());
+	}
+
 	// ---
 	
 	private RxJavaProcessor<?,?> invokeGetProcessor(Class<?> clazz) throws Exception {
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2016 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.module.transform.javacompiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.asm.ClassReader;
+import org.springframework.asm.ClassVisitor;
+import org.springframework.asm.FieldVisitor;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+
+/**
+ * 
+ * @author agent
+ */
+public class StubArchiveGeneratorTests {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	// Stubbed in the tests below
+	static class Sample {
+		public static final int CONSTANT = 42;
+		protected String name;
+		private int count;
+		private Sample() {}
+		public String getName() { return name; }
+		private void increment() { count++; }
+	}
+
+	@Test
+	public void stub() throws Exception {
+		byte[] bytes = read(Sample.class.getName().replace('.', '/')+".class");
+		byte[] stub = StubArchiveGenerator.createStub(bytes);
+		assertTrue(stub.length < bytes.length);
+		List<String> members = new ArrayList<>();
+		new ClassReader(stub).accept(new ClassVisitor(Opcodes.ASM5) {
+			@Override
+			public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+				members.add(name+(value == null ? "" : "="+value));
+				return null;
+			}
+			@Override
+			public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+				members.add(name);
+				return new MethodVisitor(Opcodes.ASM5) {
+					@Override
+					public void visitCode() {
+						members.add("code:"+name);
+					}
+				};
+			}
+		}, 0);
+		assertEquals("[CONSTANT=42, name, <init>, getName]", members.toString());
+	}
+
+	@Test
+	public void compileAgainstStubs() throws Exception {
+		File stubArchive = new File(temporaryFolder.getRoot(), "stubs/compile-stubs.jar");
+		int classCount = StubArchiveGenerator.generate(System.getProperty("java.class.path"), ArtifactFilter.parse("rxjava"), stubArchive);
+		assertTrue(classCount > 0);
+		try (ZipFile zip = new ZipFile(stubArchive)) {
+			assertEquals(classCount, zip.size());
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			while (entries.hasMoreElements()) {
+				assertEquals(ZipEntry.STORED, entries.nextElement().getMethod());
+			}
+			assertTrue(zip.getEntry("rx/Observable.class").getSize() < read("rx/Observable.class").length / 2);
+		}
+
+		RuntimeJavaCompiler rjc = new RuntimeJavaCompiler();
+		rjc.setStubArchive(stubArchive);
+		String source =
+				"package a.b.c;\n"+
+				"public class Foo {\n"+
+				"  public rx.Observable<Integer> o() {\n"+
+				"    return rx.Observable.range(0, 3).map(i -> i * 2);\n"+
+				"  }\n"+
+				"}";
+		CompilationResult cr = rjc.compile("a.b.c.Foo", source);
+		assertTrue(cr.getCompilationMessages().toString(), cr.wasSuccessful());
+		// Defined against the real classes
+		Object o = cr.getCompiledClasses().get(0).getMethod("o").invoke(cr.getCompiledClasses().get(0).newInstance());
+		assertEquals("[0, 2, 4]", ((rx.Observable<?>)o).toList().toBlocking().single().toString());
+
+		// Only the selected artifacts were stubbed
+		cr = rjc.compile("a.b.c.Bar", "package a.b.c;\npublic class Bar {\n  org.junit.Assert a;\n}");
+		assertFalse(cr.wasSuccessful());
+		rjc.setStubArchive(null);
+		assertTrue(rjc.compile("a.b.c.Bar", "package a.b.c;\npublic class Bar {\n  org.junit.Assert a;\n}").wasSuccessful());
+	}
+
+	// ---
+
+	private byte[] read(String resource) throws Exception {
+		try (InputStream is = getClass().getClassLoader().getResourceAsStream(resource)) {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = is.read(buffer)) != -1) {
+				baos.write(buffer, 0, read);
+			}
+			return baos.toByteArray();
+		}
+	}
+
+}